@@ -0,0 +1,97 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
+import study.querydsl.repository.MemberFetchPlan;
+import study.querydsl.repository.MemberRepository;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 팀 하나 회원을 조회해서 team 이름, 팀원 수까지 읽을 때 계획별 응답 시간
+ * - needs = team : 팀 이름만 사용, teammates : 팀원까지 사용
+ * (DEFAULT 는 N+1, 필요 없는 것까지 페치 조인하면 행 수만큼 손해)
+ * ./gradlew jmh -Pjmh.include=FetchPlanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FetchPlanBenchmark {
+
+    private static final MemberSearchCondition TEAM7 = new MemberSearchCondition(null, "team7", null, null);
+
+    @Param({"DEFAULT", "WITH_TEAM", "WITH_TEAM_AND_TEAMMATES"})
+    MemberFetchPlan plan;
+
+    @Param({"team", "teammates"})
+    String needs;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate readOnly;
+    MemberRepository memberRepository;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=bench",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "member.change-log.path=build/change-log/bench-member-changes.log")
+                .run();
+        memberRepository = context.getBean(MemberRepository.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+
+        //팀당 약 100명
+        context.getBean(MemberFixtures.class).load(FixtureSpec.builder()
+                .teams(100)
+                .members(10_000)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public long findMembers() {
+        return readOnly.execute(status -> {
+            long sum = 0;
+            for (Member member : memberRepository.findMembers(TEAM7, plan)) {
+                sum += member.getTeam().getName().length();
+                if ("teammates".equals(needs)) {
+                    for (Member teammate : member.getTeam().getMembers()) sum += teammate.getAge();
+                }
+            }
+            return sum;
+        });
+    }
+}
@@ -0,0 +1,108 @@
+package study.querydsl.benchmark;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.dto.MemberTeamBinaryWriter;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * /v1/members 응답 직렬화 : json(jackson) vs 바이너리(application/x-member-team)
+ * ./gradlew jmh -Pjmh.include=MemberTeamSerializationBenchmark
+ * 응답 크기(원본, gzip)는 setup 에서 출력
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemberTeamSerializationBenchmark {
+
+    @Param({"100", "10000"})
+    int rows;
+
+    List<MemberTeamDto> result;
+    ObjectMapper objectMapper;
+
+    @Setup
+    public void setup() throws IOException {
+        objectMapper = new ObjectMapper();
+        result = new ArrayList<>();
+        for (int i = 0; i < rows; i++) {
+            result.add(new MemberTeamDto((long) i, "member" + i, i % 100, (long) (i % 10), "team" + (i % 10)));
+        }
+
+        byte[] json = objectMapper.writeValueAsBytes(result);
+        ByteArrayOutputStream binary = new ByteArrayOutputStream();
+        writeBinary(binary);
+        System.out.printf("%n[%d rows] json = %d bytes (gzip %d), binary = %d bytes (gzip %d)%n",
+                rows, json.length, gzip(json), binary.size(), gzip(binary.toByteArray()));
+    }
+
+    @Benchmark
+    public long json() throws IOException {
+        CountingOutputStream out = new CountingOutputStream();
+        //응답처럼 스트림에 바로 쓰기
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+            objectMapper.writeValue(generator, result);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long binary() {
+        CountingOutputStream out = new CountingOutputStream();
+        writeBinary(out);
+        return out.count;
+    }
+
+    private void writeBinary(OutputStream out) {
+        MemberTeamBinaryWriter writer = new MemberTeamBinaryWriter(out);
+        for (MemberTeamDto dto : result) writer.write(dto);
+        writer.finish();
+    }
+
+    private static int gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(bytes);
+        }
+        return out.size();
+    }
+
+    /**
+     * 네트워크 대신 바이트 수만 세는 스트림
+     */
+    static class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.FactoryExpression;
+import com.querydsl.core.types.Projections;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.dto.MemberDto;
+import study.querydsl.dto.QMemberDto;
+import study.querydsl.dto.UserDto;
+import study.querydsl.repository.FastProjections;
+
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 행 -> DTO 변환 비용 (DB 제외)
+ * setter(bean), field, constructor, @QueryProjection 4가지를 Projections 와 FastProjections 로 비교
+ * ./gradlew jmh -Pjmh.include=ProjectionMappingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ProjectionMappingBenchmark {
+
+    Object[] row;
+
+    FactoryExpression<MemberDto> querydslBean;
+    FactoryExpression<MemberDto> querydslFields;
+    FactoryExpression<UserDto> querydslConstructor;
+    FactoryExpression<MemberDto> queryProjection;
+
+    FactoryExpression<MemberDto> fastBean;
+    FactoryExpression<MemberDto> fastFields;
+    FactoryExpression<UserDto> fastConstructor;
+
+    @Setup
+    public void setup() {
+        row = new Object[]{"member1", 10};
+
+        querydslBean = Projections.bean(MemberDto.class, member.username, member.age);
+        querydslFields = Projections.fields(MemberDto.class, member.username, member.age);
+        querydslConstructor = Projections.constructor(UserDto.class, member.username, member.age);
+        queryProjection = new QMemberDto(member.username, member.age);
+
+        fastBean = FastProjections.bean(MemberDto.class, member.username, member.age);
+        fastFields = FastProjections.fields(MemberDto.class, member.username, member.age);
+        fastConstructor = FastProjections.constructor(UserDto.class, member.username, member.age);
+    }
+
+    @Benchmark
+    public MemberDto querydslBean() {
+        return querydslBean.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto querydslFields() {
+        return querydslFields.newInstance(row);
+    }
+
+    @Benchmark
+    public UserDto querydslConstructor() {
+        return querydslConstructor.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto queryProjection() {
+        return queryProjection.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto fastBean() {
+        return fastBean.newInstance(row);
+    }
+
+    @Benchmark
+    public MemberDto fastFields() {
+        return fastFields.newInstance(row);
+    }
+
+    @Benchmark
+    public UserDto fastConstructor() {
+        return fastConstructor.newInstance(row);
+    }
+}
@@ -0,0 +1,68 @@
+package study.querydsl.benchmark;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.repository.SingleFlight;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 같은 조건 검색이 한꺼번에 몰릴 때 (thundering herd) DB 로 나가는 쿼리 수
+ * - 쿼리는 1ms 걸리는 가짜 쿼리 (DB 부하 = dbQueries)
+ * - direct : 요청마다 쿼리, coalesced : SingleFlight 로 실행 중인 쿼리에 합류
+ * - 결과의 dbQueries / ops 비율이 요청당 실제 쿼리 수
+ * ./gradlew jmh -Pjmh.include=SearchCoalescingBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(32)
+@Fork(1)
+public class SearchCoalescingBenchmark {
+
+    private static final long QUERY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final String CONDITION = "teamName=teamA";
+
+    SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Db {
+        public long dbQueries;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            dbQueries = 0;
+        }
+
+        Object query() {
+            dbQueries++;
+            LockSupport.parkNanos(QUERY_NANOS);
+            return new Object();
+        }
+    }
+
+    @Benchmark
+    public Object direct(Db db) {
+        return db.query();
+    }
+
+    @Benchmark
+    public Object coalesced(Db db) {
+        return singleFlight.execute(CONDITION, db::query);
+    }
+}
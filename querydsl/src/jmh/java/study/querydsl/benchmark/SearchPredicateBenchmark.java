@@ -0,0 +1,121 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.repository.MemberSearchPredicates;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 검색 쿼리 한 번 만들 때 드는 비용 (DB 제외, JPQL 문자열까지)
+ * - perSearch : 검색마다 QMemberTeamDto, BooleanExpression 을 새로 만드는 이전 방식
+ * - shared : MemberSearchPredicates (미리 만든 프로젝션, 조건 조합별 where 절 + 파라미터 바인딩)
+ * 검색당 할당량은 gc 프로파일러의 gc.alloc.rate.norm 으로 확인
+ * ./gradlew jmh -Pjmh.include=SearchPredicateBenchmark -Pjmh.profilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SearchPredicateBenchmark {
+
+    @Param({"none", "username", "all"})
+    String shape;
+
+    MemberSearchCondition condition;
+
+    @Setup
+    public void setup() {
+        switch (shape) {
+            case "username":
+                condition = new MemberSearchCondition("member1", null, null, null);
+                break;
+            case "all":
+                condition = new MemberSearchCondition("member1", "teamA", 10, 40);
+                break;
+            default:
+                condition = new MemberSearchCondition(null, null, null, null);
+        }
+    }
+
+    @Benchmark
+    public JPAQuery<MemberTeamDto> perSearchBuild() {
+        return perSearch();
+    }
+
+    @Benchmark
+    public JPAQuery<MemberTeamDto> sharedBuild() {
+        return shared();
+    }
+
+    @Benchmark
+    public String perSearchJpql() {
+        return perSearch().toString();
+    }
+
+    @Benchmark
+    public String sharedJpql() {
+        return shared().toString();
+    }
+
+    private JPAQuery<MemberTeamDto> perSearch() {
+        return new JPAQuery<>()
+                .select(new QMemberTeamDto(
+                        member.id.as("memberId"),
+                        member.username,
+                        member.age,
+                        team.id.as("teamId"),
+                        team.name.as("teamName")))
+                .from(member)
+                .leftJoin(member.team, team)
+                .where(
+                        usernameEq(condition.getUsername()),
+                        teamNameEq(condition.getTeamName()),
+                        ageGoe(condition.getAgeGoe()),
+                        ageLoe(condition.getAgeLoe())
+                );
+    }
+
+    private JPAQuery<MemberTeamDto> shared() {
+        return MemberSearchPredicates.where(new JPAQuery<>()
+                .select(MemberSearchPredicates.MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), condition);
+    }
+
+    private BooleanExpression usernameEq(String username) {
+        return hasText(username) ? member.username.eq(username) : null;
+    }
+
+    private BooleanExpression teamNameEq(String teamName) {
+        return hasText(teamName) ? team.name.eq(teamName) : null;
+    }
+
+    private BooleanExpression ageGoe(Integer ageGoe) {
+        return ageGoe != null ? member.age.goe(ageGoe) : null;
+    }
+
+    private BooleanExpression ageLoe(Integer ageLoe) {
+        return ageLoe != null ? member.age.loe(ageLoe) : null;
+    }
+}
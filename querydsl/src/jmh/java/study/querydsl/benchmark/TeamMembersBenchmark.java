@@ -0,0 +1,132 @@
+package study.querydsl.benchmark;
+
+import org.hibernate.Hibernate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
+import study.querydsl.repository.TeamRepository;
+
+import javax.persistence.EntityManager;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 회원이 아주 많은 팀의 Team.members 접근
+ * - initialize : 컬렉션 전체 로딩 (EXTRA 이전 changeTeam 이 하던 일)
+ * - extraLazySize : members.size() -> count 쿼리
+ * - countMembers, page : TeamRepository
+ * - changeTeam : 큰 팀으로 회원 이동 (컬렉션 초기화 없음, 롤백)
+ * 메모리는 gc 프로파일러의 gc.alloc.rate.norm (호출당 할당 바이트) 으로 비교
+ * ./gradlew jmh -Pjmh.include=TeamMembersBenchmark -Pjmh.profilers=gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class TeamMembersBenchmark {
+
+    @Param({"100000", "1000000"})
+    int members;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate transactionTemplate;
+    TransactionTemplate readOnly;
+    EntityManager em;
+    TeamRepository teamRepository;
+    Long teamId;
+    Long otherTeamId;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=bench",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "member.change-log.path=build/change-log/bench-member-changes.log")
+                .run();
+        em = context.getBean(EntityManager.class);
+        teamRepository = context.getBean(TeamRepository.class);
+        transactionTemplate = context.getBean(TransactionTemplate.class);
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+
+        //팀 2개에 몰아서 (SKEWED 면 team0 에 대부분)
+        context.getBean(MemberFixtures.class).load(FixtureSpec.builder()
+                .teams(2)
+                .members(members)
+                .teamDistribution(FixtureSpec.TeamDistribution.SKEWED)
+                .build());
+        teamId = readOnly.execute(status -> em.createQuery("select t.id from Team t where t.name = 'team0'", Long.class)
+                .getSingleResult());
+        otherTeamId = readOnly.execute(status -> em.createQuery("select t.id from Team t where t.name = 'team1'", Long.class)
+                .getSingleResult());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public int initialize() {
+        return readOnly.execute(status -> {
+            Team team = em.find(Team.class, teamId);
+            Hibernate.initialize(team.getMembers());
+            return team.getMembers().size();
+        });
+    }
+
+    @Benchmark
+    public int extraLazySize() {
+        return readOnly.execute(status -> em.find(Team.class, teamId).getMembers().size());
+    }
+
+    @Benchmark
+    public long countMembers() {
+        return readOnly.execute(status -> teamRepository.countMembers(teamId));
+    }
+
+    @Benchmark
+    public Page<Member> page() {
+        return readOnly.execute(status -> teamRepository.findMembers(teamId, PageRequest.of(100, 20)));
+    }
+
+    @Benchmark
+    public Member changeTeam() {
+        return transactionTemplate.execute(status -> {
+            Member member = em.createQuery("select m from Member m where m.team.id = :teamId", Member.class)
+                    .setParameter("teamId", otherTeamId)
+                    .setMaxResults(1)
+                    .getSingleResult();
+            member.changeTeam(em.find(Team.class, teamId));
+            em.flush();
+            status.setRollbackOnly();
+            return member;
+        });
+    }
+}
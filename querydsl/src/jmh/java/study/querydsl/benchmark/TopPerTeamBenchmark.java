@@ -0,0 +1,125 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
+import study.querydsl.repository.MemberTopPerTeamQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+
+/**
+ * 팀별 나이 많은 순 K 명
+ * - perTeam : 팀마다 쿼리 한 번 (팀 수 + 1 번 왕복)
+ * - window : row_number() 네이티브 쿼리 한 번
+ * - correlated : 상관 서브쿼리 JPQL 한 번
+ * H2 메모리 DB 에 teams x membersPerTeam 명을 넣고 측정 (팀은 무작위 균등 배정, 스냅샷 픽스처로 복원)
+ * ./gradlew jmh -Pjmh.include=TopPerTeamBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TopPerTeamBenchmark {
+
+    private static final Sort OLDEST = Sort.by(Sort.Order.desc("age"));
+    private static final MemberSearchCondition ALL = new MemberSearchCondition(null, null, null, null);
+
+    @Param({"100", "1000"})
+    int teams;
+
+    @Param({"50"})
+    int membersPerTeam;
+
+    @Param({"3"})
+    int k;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate readOnly;
+    JPAQueryFactory queryFactory;
+    MemberTopPerTeamQuery topPerTeamQuery;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=bench",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "member.change-log.path=build/change-log/bench-member-changes.log")
+                .run();
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        topPerTeamQuery = context.getBean(MemberTopPerTeamQuery.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+
+        context.getBean(MemberFixtures.class).load(FixtureSpec.builder()
+                .teams(teams)
+                .members(teams * membersPerTeam)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> perTeam() {
+        return readOnly.execute(status -> {
+            List<MemberTeamDto> result = new ArrayList<>();
+            for (Long teamId : queryFactory.select(team.id).from(team).orderBy(team.id.asc()).fetch()) {
+                result.addAll(queryFactory
+                        .select(MEMBER_TEAM_DTO)
+                        .from(member)
+                        .join(member.team, team)
+                        .where(team.id.eq(teamId))
+                        .orderBy(member.age.desc(), member.id.desc())
+                        .limit(k)
+                        .fetch());
+            }
+            return result;
+        });
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> window() {
+        return readOnly.execute(status -> topPerTeamQuery.find(ALL, OLDEST, k, MemberTopPerTeamQuery.Strategy.WINDOW));
+    }
+
+    @Benchmark
+    public List<MemberTeamDto> correlated() {
+        return readOnly.execute(status -> topPerTeamQuery.find(ALL, OLDEST, k, MemberTopPerTeamQuery.Strategy.CORRELATED));
+    }
+}
@@ -0,0 +1,92 @@
+package study.querydsl.benchmark;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.entity.Member;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+import static study.querydsl.entity.QMember.member;
+
+/**
+ * 대소문자 무시 회원명 검색 : lower(username) = ? (인덱스 못탐, 전체 스캔) vs normalized_username = ? (인덱스)
+ * - exact 는 대소문자 구분 username = ? 기준선
+ * ./gradlew jmh -Pjmh.include=UsernameMatchBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UsernameMatchBenchmark {
+
+    private static final String INPUT = " MEMBER7777 ";
+
+    @Param({"exact", "function", "normalized"})
+    String match;
+
+    ConfigurableApplicationContext context;
+    TransactionTemplate readOnly;
+    JPAQueryFactory queryFactory;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        context = new SpringApplicationBuilder(QuerydslApplication.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.profiles.active=bench",
+                        "spring.datasource.url=jdbc:h2:mem:bench;DB_CLOSE_DELAY=-1",
+                        "decorator.datasource.p6spy.enable-logging=false",
+                        "logging.level.org.hibernate.SQL=warn",
+                        "member.change-log.path=build/change-log/bench-member-changes.log")
+                .run();
+        queryFactory = context.getBean(JPAQueryFactory.class);
+        TransactionTemplate transactionTemplate = context.getBean(TransactionTemplate.class);
+        readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+
+        //스캔 비용이 보이도록 회원 10만명
+        context.getBean(MemberFixtures.class).load(FixtureSpec.builder()
+                .teams(100)
+                .members(100_000)
+                .build());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<Long> findByUsername() {
+        return readOnly.execute(status -> queryFactory
+                .select(member.id)
+                .from(member)
+                .where("exact".equals(match) ? member.username.eq(INPUT.trim().toLowerCase(Locale.ROOT))
+                        : "function".equals(match) ? member.username.lower().eq(INPUT.trim().toLowerCase(Locale.ROOT))
+                        : member.normalizedUsername.eq(Member.normalizeUsername(INPUT)))
+                .fetch());
+    }
+}
@@ -0,0 +1,66 @@
+package study.querydsl.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 엔드포인트 하나의 응답시간 기록
+ * - 응답시간은 "보내기로 예정된 시각" 부터 잰다 (coordinated omission 방지)
+ */
+public class LatencyRecorder {
+
+    private long[] latencies = new long[1024];  //nanos
+    private int count;
+    private long errors;
+    private long dropped;
+
+    public synchronized void record(long latencyNanos, boolean success) {
+        if (!success) {
+            errors++;
+            return;
+        }
+        if (count == latencies.length) latencies = Arrays.copyOf(latencies, count * 2);
+        latencies[count++] = latencyNanos;
+    }
+
+    public synchronized void drop() {
+        dropped++;
+    }
+
+    /**
+     * json 으로 남길 요약 (ms 단위)
+     */
+    public synchronized Map<String, Object> summary(long elapsedNanos) {
+        long[] sorted = Arrays.copyOf(latencies, count);
+        Arrays.sort(sorted);
+
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("mean", count == 0 ? 0 : toMillis((long) Arrays.stream(sorted).average().orElse(0)));
+        latency.put("p50", toMillis(percentile(sorted, 50)));
+        latency.put("p90", toMillis(percentile(sorted, 90)));
+        latency.put("p99", toMillis(percentile(sorted, 99)));
+        latency.put("p999", toMillis(percentile(sorted, 99.9)));
+        latency.put("max", toMillis(count == 0 ? 0 : sorted[count - 1]));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("requests", count + errors + dropped);
+        result.put("success", count);
+        result.put("errors", errors);
+        result.put("dropped", dropped);
+        result.put("throughput", count / (elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1)));
+        result.put("latencyMs", latency);
+        return result;
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.loadtest;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 부하 테스트 설정 (-PloadTest.xxx 로 넘어온 system property 사용)
+ */
+@Getter
+@ToString
+public class LoadTestConfig {
+
+    private final int teams;            //팀 수
+    private final int members;          //회원 수
+    private final int rate;             //초당 요청 수 (목표치)
+    private final int warmupSeconds;    //워밍업 (결과에 포함 안됨)
+    private final int durationSeconds;  //측정 시간
+    private final int maxInFlight;      //동시에 떠있는 요청 상한 (넘으면 dropped 로 기록)
+    private final long seed;
+    private final String name;          //결과 파일 이름
+    private final List<String> threadModes; //platform, virtual (둘 다 주면 차례로 실행해서 비교)
+    private final Path reportDir;
+
+    private LoadTestConfig() {
+        this.teams = intProperty("loadTest.teams", 10);
+        this.members = intProperty("loadTest.members", 10_000);
+        this.rate = intProperty("loadTest.rate", 100);
+        this.warmupSeconds = intProperty("loadTest.warmup", 10);
+        this.durationSeconds = intProperty("loadTest.duration", 30);
+        this.maxInFlight = intProperty("loadTest.maxInFlight", 1_000);
+        this.seed = Long.getLong("loadTest.seed", 42L);
+        this.name = System.getProperty("loadTest.name", "members");
+        this.threadModes = Arrays.asList(System.getProperty("loadTest.threads", "platform").split(","));
+        this.reportDir = Paths.get(System.getProperty("loadTest.reportDir", "build/reports/loadtest"));
+    }
+
+    public static LoadTestConfig fromSystemProperties() {
+        return new LoadTestConfig();
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return Integer.parseInt(System.getProperty(key, String.valueOf(defaultValue)));
+    }
+}
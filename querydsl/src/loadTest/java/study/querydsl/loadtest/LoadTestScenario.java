@@ -0,0 +1,74 @@
+package study.querydsl.loadtest;
+
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.function.BiFunction;
+
+/**
+ * 요청 믹스 (MemberSearchCondition + Pageable 조합별 가중치)
+ */
+@Getter
+@RequiredArgsConstructor
+public class LoadTestScenario {
+
+    private final String name;
+    private final String endpoint;
+    private final int weight;
+    private final BiFunction<Random, LoadTestConfig, String> query;  //쿼리스트링 생성
+
+    public String uri(Random random, LoadTestConfig config) {
+        String queryString = query.apply(random, config);
+        return queryString.isEmpty() ? endpoint : endpoint + "?" + queryString;
+    }
+
+    /**
+     * 기본 믹스 : 조건 없는 전체조회는 적게, 이름/팀/나이 조건 + 페이징 위주
+     */
+    public static List<LoadTestScenario> defaultMix() {
+        List<LoadTestScenario> mix = new ArrayList<>();
+        mix.add(new LoadTestScenario("v1.username", "/v1/members", 20,
+                (r, c) -> "username=member" + r.nextInt(c.getMembers())));
+        mix.add(new LoadTestScenario("v1.team.age", "/v1/members", 10,
+                (r, c) -> "teamName=team" + r.nextInt(c.getTeams()) + ageRange(r)));
+        mix.add(new LoadTestScenario("v1.all", "/v1/members", 1,
+                (r, c) -> ""));
+        mix.add(new LoadTestScenario("v2.page", "/v2/members", 25,
+                (r, c) -> page(r, c, 20)));
+        mix.add(new LoadTestScenario("v2.team.page", "/v2/members", 10,
+                (r, c) -> "teamName=team" + r.nextInt(c.getTeams()) + "&" + page(r, c, 20)));
+        mix.add(new LoadTestScenario("v3.page", "/v3/members", 25,
+                (r, c) -> page(r, c, 20)));
+        mix.add(new LoadTestScenario("v3.age.page", "/v3/members", 9,
+                (r, c) -> ageRange(r).substring(1) + "&" + page(r, c, 20)));
+        return mix;
+    }
+
+    /**
+     * 가중치에 따라 하나 고르기
+     */
+    public static LoadTestScenario pick(List<LoadTestScenario> mix, Random random) {
+        int total = mix.stream().mapToInt(LoadTestScenario::getWeight).sum();
+        int point = random.nextInt(total);
+        for (LoadTestScenario scenario : mix) {
+            point -= scenario.getWeight();
+            if (point < 0) return scenario;
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private static String ageRange(Random random) {
+        int ageGoe = random.nextInt(90);
+        return "&ageGoe=" + ageGoe + "&ageLoe=" + (ageGoe + 10);
+    }
+
+    private static String page(Random random, LoadTestConfig config, int size) {
+        //앞쪽 페이지를 더 자주 (실제 트래픽처럼)
+        int lastPage = Math.max(1, config.getMembers() / size);
+        int page = (int) Math.min(lastPage - 1, Math.abs(random.nextGaussian()) * 10);
+        return "page=" + page + "&size=" + size;
+    }
+}
@@ -0,0 +1,200 @@
+package study.querydsl.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import study.querydsl.QuerydslApplication;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * /v1, /v2, /v3 members 부하 테스트 (./gradlew loadTest)
+ * 1. H2 메모리 DB 로 앱을 띄우고 loadTest.members 만큼 데이터 입력 (두 번째 실행부터는 스냅샷에서 복원)
+ * 2. 정해진 rate 로 요청을 "예정된 시각"에 보낸다 (open model : 응답을 기다리지 않음)
+ * 3. 엔드포인트별 처리량, 응답시간 백분위를 build/reports/loadtest/{name}.json 으로 저장
+ * 4. loadTest.threads=platform,virtual 이면 플랫폼 스레드, 가상 스레드로 한번씩 띄워서 {name}-{mode}.json 으로 각각 저장
+ *    (가상 스레드는 -PvirtualThreads 로 빌드해야 함, 고정(pinning) 된 repository 호출도 같이 기록)
+ */
+public class MemberLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        LoadTestConfig config = LoadTestConfig.fromSystemProperties();
+        System.out.println("load test config = " + config);
+
+        for (String mode : config.getThreadModes()) {
+            boolean virtual = "virtual".equals(mode);
+            if (virtual && !virtualThreadsBuilt()) {
+                throw new IllegalStateException("가상 스레드 실행은 -PvirtualThreads 로 빌드해야 합니다");
+            }
+            ConfigurableApplicationContext context = new SpringApplicationBuilder(QuerydslApplication.class)
+                    .run("--spring.profiles.active=loadtest", "--server.port=0",
+                            "--member.virtual-threads.enabled=" + virtual);
+            try {
+                context.getBean(MemberFixtures.class).load(FixtureSpec.builder()
+                        .teams(config.getTeams())
+                        .members(config.getMembers())
+                        .seed(config.getSeed())
+                        .build());
+
+                String baseUrl = "http://localhost:" + context.getEnvironment().getProperty("local.server.port");
+                Map<String, Object> report = new MemberLoadTest().run(config, baseUrl, LoadTestScenario.defaultMix());
+                report.put("threads", mode);
+                if (virtual) report.put("pinned", pinnedCalls(context.getBean(MeterRegistry.class)));
+
+                String name = config.getThreadModes().size() > 1 ? config.getName() + "-" + mode : config.getName();
+                Path file = writeReport(config.getReportDir().resolve(name + ".json"), report);
+                System.out.println("load test report = " + file.toAbsolutePath());
+            } finally {
+                context.close();
+            }
+        }
+    }
+
+    private static boolean virtualThreadsBuilt() {
+        try {
+            Class.forName("study.querydsl.vthread.VirtualThreadConfig");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * PinningDetector 가 남긴 member.vthread.pinned 지표 (호출 지점별 횟수, 합계 ms)
+     */
+    private static Map<String, Object> pinnedCalls(MeterRegistry meterRegistry) {
+        Map<String, Object> result = new TreeMap<>();
+        for (Timer timer : meterRegistry.find("member.vthread.pinned").timers()) {
+            Map<String, Object> call = new LinkedHashMap<>();
+            call.put("count", timer.count());
+            call.put("totalMs", timer.totalTime(TimeUnit.MILLISECONDS));
+            call.put("maxMs", timer.max(TimeUnit.MILLISECONDS));
+            result.put(timer.getId().getTag("call"), call);
+        }
+        return result;
+    }
+
+    public Map<String, Object> run(LoadTestConfig config, String baseUrl, List<LoadTestScenario> mix) {
+        ExecutorService executor = Executors.newCachedThreadPool();
+        HttpClient client = HttpClient.newBuilder()
+                .executor(executor)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        Map<String, LatencyRecorder> endpoints = new TreeMap<>();
+        Map<String, LatencyRecorder> scenarios = new TreeMap<>();
+        for (LoadTestScenario scenario : mix) {
+            endpoints.putIfAbsent(scenario.getEndpoint(), new LatencyRecorder());
+            scenarios.putIfAbsent(scenario.getName(), new LatencyRecorder());
+        }
+
+        Random random = new Random(config.getSeed());
+        long period = TimeUnit.SECONDS.toNanos(1) / config.getRate();
+        long total = (long) config.getRate() * (config.getWarmupSeconds() + config.getDurationSeconds());
+        long warmupRequests = (long) config.getRate() * config.getWarmupSeconds();
+        AtomicInteger inFlight = new AtomicInteger();
+
+        long start = System.nanoTime();
+        for (long i = 0; i < total; i++) {
+            long intendedStart = start + i * period;
+            long wait = intendedStart - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            LoadTestScenario scenario = LoadTestScenario.pick(mix, random);
+            URI uri = URI.create(baseUrl + scenario.uri(random, config));
+            boolean measured = i >= warmupRequests;
+            LatencyRecorder endpoint = endpoints.get(scenario.getEndpoint());
+            LatencyRecorder named = scenarios.get(scenario.getName());
+
+            //서버가 밀려도 요청은 계속 예정대로 보낸다. 상한을 넘는 것만 dropped 로 기록
+            if (inFlight.get() >= config.getMaxInFlight()) {
+                if (measured) {
+                    endpoint.drop();
+                    named.drop();
+                }
+                continue;
+            }
+
+            inFlight.incrementAndGet();
+            HttpRequest request = HttpRequest.newBuilder(uri)
+                    .header("Accept", "application/json")
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, ex) -> {
+                        //보낸 시각이 아니라 예정된 시각부터 잰다
+                        long latency = System.nanoTime() - intendedStart;
+                        boolean success = ex == null && response.statusCode() / 100 == 2;
+                        if (measured) {
+                            endpoint.record(latency, success);
+                            named.record(latency, success);
+                        }
+                        inFlight.decrementAndGet();
+                    });
+        }
+        //남은 요청 응답 기다리기 (요청 timeout 이 30초)
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(35);
+        while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+        long elapsed = System.nanoTime() - start - TimeUnit.SECONDS.toNanos(config.getWarmupSeconds());
+        executor.shutdown();
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("name", config.getName());
+        report.put("startedAt", Instant.now().toString());
+        report.put("config", configSummary(config));
+        report.put("endpoints", summaries(endpoints, elapsed));
+        report.put("scenarios", summaries(scenarios, elapsed));
+        return report;
+    }
+
+    private static Map<String, Object> summaries(Map<String, LatencyRecorder> recorders, long elapsed) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        recorders.forEach((name, recorder) -> result.put(name, recorder.summary(elapsed)));
+        return result;
+    }
+
+    private static Map<String, Object> configSummary(LoadTestConfig config) {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("teams", config.getTeams());
+        result.put("members", config.getMembers());
+        result.put("rate", config.getRate());
+        result.put("warmupSeconds", config.getWarmupSeconds());
+        result.put("durationSeconds", config.getDurationSeconds());
+        result.put("maxInFlight", config.getMaxInFlight());
+        result.put("seed", config.getSeed());
+        return result;
+    }
+
+    private static Path writeReport(Path file, Map<String, Object> report) throws Exception {
+        Files.createDirectories(file.getParent());
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), report);
+        return file;
+    }
+}
@@ -0,0 +1,137 @@
+package study.querydsl.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 시작 시간 측정 (./gradlew startupTime)
+ * - 설정마다 앱을 새 JVM 으로 띄우고 프로세스 시작 ~ 첫 /v1/members 응답까지 시간을 잰다
+ *   default : application.yml 그대로 (스키마 새로 생성, 샘플 데이터 입력)
+ *   fast-startup : fast-startup 프로필, fast-startup-cds : + CDS 아카이브 (./gradlew cdsArchive 로 만들어 둔 경우만)
+ * - 같은 H2 파일 DB 를 쓰고 default 를 먼저 띄워서 fast-startup 이 검증할 스키마를 만든다
+ * - 설정을 번갈아 startup.runs 번씩, 결과는 build/reports/startup/startup.json (각 실행 로그도 같은 폴더에)
+ */
+public class StartupTimeTest {
+
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    private final String classpath = System.getProperty("startup.appClasspath", System.getProperty("java.class.path"));
+    private final String datasourceUrl = System.getProperty("startup.datasourceUrl", "jdbc:h2:file:./build/startup/db");
+    private final Path cdsArchive = Paths.get(System.getProperty("startup.cdsArchive", "build/cds/app.jsa"));
+    private final Path reportDir = Paths.get(System.getProperty("startup.reportDir", "build/reports/startup"));
+    private final int runs = Integer.parseInt(System.getProperty("startup.runs", "5"));
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofMillis(200))
+            .build();
+
+    public static void main(String[] args) throws Exception {
+        new StartupTimeTest().run();
+    }
+
+    private void run() throws Exception {
+        Files.createDirectories(reportDir);
+        Map<String, List<String>> variants = new LinkedHashMap<>();
+        variants.put("default", List.of());
+        variants.put("fast-startup", List.of());
+        if (Files.exists(cdsArchive)) {
+            variants.put("fast-startup-cds", List.of("-XX:SharedArchiveFile=" + cdsArchive.toAbsolutePath(), "-Xshare:auto"));
+        } else {
+            System.out.println("no CDS archive at " + cdsArchive + " (./gradlew cdsArchive), skip fast-startup-cds");
+        }
+
+        Map<String, List<Long>> results = new LinkedHashMap<>();
+        variants.keySet().forEach(name -> results.put(name, new ArrayList<>()));
+        for (int run = 0; run < runs; run++) {
+            for (Map.Entry<String, List<String>> variant : variants.entrySet()) {
+                long millis = timeToFirstRequest(variant.getKey(), variant.getValue(), run);
+                results.get(variant.getKey()).add(millis);
+                System.out.println(variant.getKey() + " #" + run + " = " + millis + " ms");
+            }
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        results.forEach((name, millis) -> report.put(name, summary(millis)));
+        Path file = reportDir.resolve("startup.json");
+        new ObjectMapper()
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), report);
+        System.out.println("startup report = " + file.toAbsolutePath());
+    }
+
+    private long timeToFirstRequest(String name, List<String> jvmArgs, int run) throws Exception {
+        int port = freePort();
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(jvmArgs);
+        command.addAll(Arrays.asList("-cp", classpath, "study.querydsl.QuerydslApplication",
+                "--spring.profiles.active=" + (name.startsWith("fast-startup") ? "local,fast-startup" : "local"),
+                "--spring.datasource.url=" + datasourceUrl,
+                "--server.port=" + port));
+
+        File log = reportDir.resolve(name + "-" + run + ".log").toFile();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectErrorStream(true)
+                .redirectOutput(log)
+                .start();
+        try {
+            awaitFirstResponse(process, URI.create("http://localhost:" + port + "/v1/members?teamName=teamA"), log);
+            return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        } finally {
+            //정상 종료를 기다려야 H2 파일 잠금이 풀린다
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) process.destroyForcibly().waitFor();
+        }
+    }
+
+    private void awaitFirstResponse(Process process, URI uri, File log) throws Exception {
+        long deadline = System.nanoTime() + TIMEOUT.toNanos();
+        HttpRequest request = HttpRequest.newBuilder(uri).timeout(Duration.ofSeconds(5)).build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) throw new IllegalStateException("앱이 시작 중에 종료됨, 로그 : " + log);
+            try {
+                if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) return;
+            } catch (IOException e) {
+                //아직 포트가 안열림
+            }
+            Thread.sleep(10);
+        }
+        throw new IllegalStateException(TIMEOUT + " 안에 응답이 없음, 로그 : " + log);
+    }
+
+    private static Map<String, Object> summary(List<Long> millis) {
+        List<Long> sorted = new ArrayList<>(millis);
+        sorted.sort(null);
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("runsMs", millis);
+        summary.put("minMs", sorted.get(0));
+        summary.put("medianMs", sorted.get(sorted.size() / 2));
+        summary.put("maxMs", sorted.get(sorted.size() - 1));
+        return summary;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -1,9 +1,16 @@
 package study.querydsl;
 
 import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.jpa.boot.spi.JpaSettings;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
 import org.springframework.context.annotation.Bean;
+import study.querydsl.change.ChangeTrackingQueryFactory;
+import study.querydsl.change.MemberChangeListener;
+import study.querydsl.guard.QueryInspector;
+import study.querydsl.repository.MemberSqlFunctions;
+import study.querydsl.summary.MemberCountSummary;
 
 import javax.persistence.EntityManager;
 
@@ -15,8 +22,17 @@ public class QuerydslApplication {
 	}
 
 	@Bean
-	public JPAQueryFactory jpaQueryFactory(EntityManager em) {
-		return new JPAQueryFactory(em);
+	public JPAQueryFactory jpaQueryFactory(EntityManager em, MemberChangeListener memberChangeListener,
+										   QueryInspector queryInspector, MemberCountSummary memberCountSummary) {
+		return new ChangeTrackingQueryFactory(em, memberChangeListener, queryInspector, memberCountSummary);
+	}
+
+	/**
+	 * count_over() 같은 SQL 함수 (MemberSqlFunctions), 어떤 application.yml 이 올라와도 등록되도록 코드에서
+	 */
+	@Bean
+	public HibernatePropertiesCustomizer memberSqlFunctions() {
+		return properties -> properties.put(JpaSettings.METADATA_BUILDER_CONTRIBUTOR, new MemberSqlFunctions());
 	}
 
 }
@@ -0,0 +1,63 @@
+package study.querydsl.change;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 여러 스레드가 넣고 한 스레드가 꺼내는 락 없는 링 버퍼 (multi-producer, single-consumer)
+ * - 넣는 쪽 : tail 을 CAS 로 한 칸 예약하고 그 칸에 값을 쓴다
+ * - 꺼내는 쪽 : head 부터 값이 채워진 칸까지만 꺼내고 칸을 비운다 (예약만 되고 아직 안 쓰인 칸에서 멈춤 -> 순서 보장)
+ */
+class ChangeEventRingBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int capacity;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    ChangeEventRingBuffer(int capacity) {
+        if (Integer.bitCount(capacity) != 1) throw new IllegalArgumentException("capacity 는 2의 제곱수 : " + capacity);
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.capacity = capacity;
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * 가득 차 있으면 false
+     */
+    boolean offer(E element) {
+        while (true) {
+            long t = tail.get();
+            if (t - head >= capacity) return false;
+            if (tail.compareAndSet(t, t + 1)) {
+                slots.set((int) (t & mask), element);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 꺼내는 스레드 하나에서만 호출
+     */
+    int drainTo(List<E> batch, int max) {
+        long h = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (h & mask);
+            E element = slots.get(index);
+            if (element == null) break;
+            slots.set(index, null);
+            batch.add(element);
+            h++;
+            drained++;
+        }
+        head = h;
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return tail.get() == head;
+    }
+}
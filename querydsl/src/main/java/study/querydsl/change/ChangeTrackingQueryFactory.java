@@ -0,0 +1,156 @@
+package study.querydsl.change;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathMetadata;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.StringPath;
+import com.querydsl.jpa.impl.JPADeleteClause;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import com.querydsl.jpa.impl.JPAUpdateClause;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import study.querydsl.change.MemberChangeEvent.Type;
+import study.querydsl.entity.Member;
+import study.querydsl.guard.InspectedJPAQuery;
+import study.querydsl.guard.QueryInspector;
+import study.querydsl.repository.QueryTimeout;
+import study.querydsl.summary.MemberCountSummary;
+
+import javax.persistence.EntityManager;
+import java.util.List;
+
+/**
+ * 벌크 연산(update, delete 의 execute())도 변경으로 기록하는 JPAQueryFactory
+ * - 조회 쿼리에는 요청 마감 시간(QueryTimeout)을 걸어준다
+ * - 조회 쿼리는 실행 직전에 QueryInspector 로 검사 (카티션 곱, 인덱스 없는 조건, 예상 행 수)
+ * - Member 벌크 delete, age/team 을 바꾸는 벌크 update 는 같은 트랜잭션에서 회원 수 요약에 영향받은 만큼만 반영
+ * - Member.username 을 벌크로 바꾸면 normalizedUsername 도 같이 바꾼다
+ */
+public class ChangeTrackingQueryFactory extends JPAQueryFactory {
+
+    private final EntityManager em;
+    private final MemberChangeListener memberChangeListener;
+    private final QueryInspector queryInspector;
+    private final MemberCountSummary memberCountSummary;
+
+    public ChangeTrackingQueryFactory(EntityManager em, MemberChangeListener memberChangeListener,
+                                      QueryInspector queryInspector, MemberCountSummary memberCountSummary) {
+        super(em);
+        this.em = em;
+        this.memberChangeListener = memberChangeListener;
+        this.queryInspector = queryInspector;
+        this.memberCountSummary = memberCountSummary;
+    }
+
+    @Override
+    public JPAQuery<?> query() {
+        return QueryTimeout.apply(new InspectedJPAQuery<Void>(em, queryInspector));
+    }
+
+    @Override
+    public JPAUpdateClause update(EntityPath<?> path) {
+        return new JPAUpdateClause(em, path) {
+            private final BooleanBuilder predicate = new BooleanBuilder();
+            private boolean summaryKeyChanged;
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> path, T value) {
+                summaryKeyChanged |= isSummaryKey(path);
+                super.set(path, value);
+                if (isUsername(path)) super.set(normalizedUsernameOf(path), Member.normalizeUsername((String) value));
+                return this;
+            }
+
+            @Override
+            public <T> JPAUpdateClause set(Path<T> path, Expression<? extends T> expression) {
+                if (isUsername(path)) throw usernameExpression();
+                summaryKeyChanged |= isSummaryKey(path);
+                return super.set(path, expression);
+            }
+
+            @Override
+            public <T> JPAUpdateClause setNull(Path<T> path) {
+                summaryKeyChanged |= isSummaryKey(path);
+                super.setNull(path);
+                if (isUsername(path)) super.setNull(normalizedUsernameOf(path));
+                return this;
+            }
+
+            @Override
+            public JPAUpdateClause set(List<? extends Path<?>> paths, List<?> values) {
+                if (paths.stream().anyMatch(ChangeTrackingQueryFactory::isUsername)) throw usernameExpression();
+                summaryKeyChanged |= paths.stream().anyMatch(ChangeTrackingQueryFactory::isSummaryKey);
+                return super.set(paths, values);
+            }
+
+            @Override
+            public JPAUpdateClause where(Predicate... o) {
+                for (Predicate each : o) predicate.and(each);
+                return super.where(o);
+            }
+
+            @Override
+            public long execute() {
+                long count = summaryKeyChanged && path.getType() == Member.class
+                        ? memberCountSummary.applyBulk(path, predicate.getValue(), true, super::execute)
+                        : super.execute();
+                memberChangeListener.onBulk(path.getType(), Type.BULK_UPDATE, count, toString());
+                return count;
+            }
+        };
+    }
+
+    @Override
+    public JPADeleteClause delete(EntityPath<?> path) {
+        return new JPADeleteClause(em, path) {
+            private final BooleanBuilder predicate = new BooleanBuilder();
+
+            @Override
+            public JPADeleteClause where(Predicate... o) {
+                for (Predicate each : o) predicate.and(each);
+                return super.where(o);
+            }
+
+            @Override
+            public long execute() {
+                long count = path.getType() == Member.class
+                        ? memberCountSummary.applyBulk(path, predicate.getValue(), false, super::execute)
+                        : super.execute();
+                memberChangeListener.onBulk(path.getType(), Type.BULK_DELETE, count, toString());
+                return count;
+            }
+        };
+    }
+
+    /**
+     * 벌크 update 는 @PreUpdate 를 거치지 않으므로 username 을 바꾸면 normalizedUsername 도 같이 set
+     */
+    private static boolean isUsername(Path<?> path) {
+        PathMetadata metadata = path.getMetadata();
+        return "username".equals(metadata.getName())
+                && metadata.getParent() != null
+                && metadata.getParent().getType() == Member.class;
+    }
+
+    /**
+     * 회원 수 요약의 키 (팀, 나이 구간) 가 바뀌는 속성, 나머지 속성만 바꾸는 벌크 update 는 요약과 상관 없음
+     */
+    private static boolean isSummaryKey(Path<?> path) {
+        PathMetadata metadata = path.getMetadata();
+        return ("age".equals(metadata.getName()) || "team".equals(metadata.getName()))
+                && metadata.getParent() != null
+                && metadata.getParent().getType() == Member.class;
+    }
+
+    private static StringPath normalizedUsernameOf(Path<?> username) {
+        return Expressions.stringPath(username.getMetadata().getParent(), "normalizedUsername");
+    }
+
+    private static InvalidDataAccessApiUsageException usernameExpression() {
+        return new InvalidDataAccessApiUsageException("username 은 값으로만 벌크 update 할 수 있음 (normalizedUsername 을 같이 맞춰야 함)");
+    }
+}
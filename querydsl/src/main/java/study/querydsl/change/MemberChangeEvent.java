@@ -0,0 +1,92 @@
+package study.querydsl.change;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.Getter;
+import lombok.ToString;
+import org.hibernate.proxy.HibernateProxy;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Member, Team 변경 이벤트
+ * - offset 은 변경 로그에 쓰일 때 순서대로 매겨진다 (그 전에는 -1)
+ * - 벌크 연산은 어떤 행이 바뀌었는지 모르므로 id 없이 jpql 과 영향받은 행 수만 담는다
+ *   (받는 쪽은 해당 엔티티 캐시를 통째로 무효화)
+ */
+@Getter
+@ToString
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MemberChangeEvent {
+
+    public enum Type {INSERT, UPDATE, DELETE, BULK_UPDATE, BULK_DELETE}
+
+    private final long offset;
+    private final Type type;
+    private final String entity;
+    private final Long id;
+    private final Map<String, Object> data;
+    private final Instant at;
+
+    @JsonCreator
+    MemberChangeEvent(@JsonProperty("offset") long offset,
+                      @JsonProperty("type") Type type,
+                      @JsonProperty("entity") String entity,
+                      @JsonProperty("id") Long id,
+                      @JsonProperty("data") Map<String, Object> data,
+                      @JsonProperty("at") Instant at) {
+        this.offset = offset;
+        this.type = type;
+        this.entity = entity;
+        this.id = id;
+        this.data = data == null ? Collections.emptyMap() : Collections.unmodifiableMap(data);
+        this.at = at;
+    }
+
+    public static MemberChangeEvent of(Type type, Object entity) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        if (entity instanceof Member) {
+            Member member = (Member) entity;
+            data.put("username", member.getUsername());
+            data.put("age", member.getAge());
+            data.put("teamId", idOf(member.getTeam()));   //changeTeam 으로 팀이 바뀌면 여기 반영
+            return new MemberChangeEvent(-1, type, "Member", member.getId(), data, Instant.now());
+        }
+        Team team = (Team) entity;
+        data.put("name", team.getName());
+        return new MemberChangeEvent(-1, type, "Team", team.getId(), data, Instant.now());
+    }
+
+    public static MemberChangeEvent bulk(Type type, Class<?> entityType, long count, String jpql) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("count", count);
+        data.put("jpql", jpql);
+        return new MemberChangeEvent(-1, type, entityType.getSimpleName(), null, data, Instant.now());
+    }
+
+    MemberChangeEvent withOffset(long offset) {
+        return new MemberChangeEvent(offset, type, entity, id, data, at);
+    }
+
+    @JsonIgnore
+    public boolean isBulk() {
+        return type == Type.BULK_UPDATE || type == Type.BULK_DELETE;
+    }
+
+    /**
+     * 프록시를 초기화하지 않고 팀 id 꺼내기
+     */
+    static Long idOf(Team team) {
+        if (team == null) return null;
+        if (team instanceof HibernateProxy)
+            return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        return team.getId();
+    }
+}
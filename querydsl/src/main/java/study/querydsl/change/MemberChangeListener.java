@@ -0,0 +1,88 @@
+package study.querydsl.change;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.stereotype.Component;
+import study.querydsl.change.MemberChangeEvent.Type;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Member, Team 엔티티 변경 감지 (hibernate 이벤트 리스너)
+ * - changeTeam 같은 변경 감지(dirty checking) 로 나가는 update 도 여기서 잡힌다
+ * - 벌크 연산은 영속성 컨텍스트를 거치지 않아서 ChangeTrackingQueryFactory 에서 onBulk 로 알려준다
+ * - 데이터 버전을 올리고 변경 이벤트를 MemberChangeStream 으로 보낸다
+ */
+@Component
+@RequiredArgsConstructor
+public class MemberChangeListener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    private final EntityManagerFactory emf;
+    private final MemberDataVersion memberDataVersion;
+    private final MemberChangeStream memberChangeStream;
+
+    @PostConstruct
+    public void register() {
+        register(emf);
+    }
+
+    /**
+     * 다른 EntityManagerFactory (샤드) 의 변경도 같이 감지
+     */
+    public void register(EntityManagerFactory emf) {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        changed(Type.INSERT, event.getEntity());
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        changed(Type.UPDATE, event.getEntity());
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        changed(Type.DELETE, event.getEntity());
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * 벌크 update, delete 실행 후 호출
+     */
+    public void onBulk(Class<?> entityType, Type type, long count, String jpql) {
+        if (count == 0) return;
+        if (entityType != Member.class && entityType != Team.class) return;
+        memberDataVersion.markChanged();
+        memberChangeStream.capture(MemberChangeEvent.bulk(type, entityType, count, jpql));
+    }
+
+    private void changed(Type type, Object entity) {
+        if (!(entity instanceof Member) && !(entity instanceof Team)) return;
+        memberDataVersion.markChanged();
+        memberChangeStream.capture(MemberChangeEvent.of(type, entity));
+    }
+}
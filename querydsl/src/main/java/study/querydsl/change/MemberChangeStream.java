@@ -0,0 +1,333 @@
+package study.querydsl.change;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Member, Team 변경 이벤트 스트림 (다른 서비스 캐시가 폴링 대신 변경분만 받아가도록)
+ * 1. 트랜잭션 안에서 생긴 이벤트는 모아뒀다가 커밋되면 링 버퍼에 넣는다 (롤백되면 버림)
+ * 2. 전달 스레드 하나가 링 버퍼에서 묶음으로 꺼내서
+ *    - 변경 로그 파일에 offset 을 붙여 append (json 한 줄에 이벤트 하나)
+ *    - 구독자에게 묶음으로 전달
+ * 3. 구독자가 놓친 이벤트는 readFrom(offset) 으로 로그에서 다시 읽는다
+ *    (offset 은 파일 안에서 증가하므로 처음부터 읽지 않고 이진 탐색으로 시작 위치를 찾는다)
+ * 커밋하는 쪽을 멈추게 하지 않는다
+ * - 로그 쓰기 실패는 기록만 하고 전달 스레드는 계속 돈다 (그 묶음은 구독자에게만 전달)
+ * - 종료 후, 전달 스레드가 죽었거나 publishTimeout 동안 버퍼가 가득 차 있으면 이벤트를 버리고 센다 (member.change.dropped)
+ *   publishTimeout 은 커밋 하나 (이벤트 묶음) 전체에 대한 한도
+ */
+@Slf4j
+@Component
+public class MemberChangeStream {
+
+    private static final int BATCH_SIZE = 256;
+
+    private final ChangeEventRingBuffer<MemberChangeEvent> buffer;
+    private final List<Consumer<List<MemberChangeEvent>>> subscribers = new CopyOnWriteArrayList<>();
+    private final ObjectMapper objectMapper;
+    private final Path logFile;
+    private final Duration publishTimeout;
+    private final Counter dropped;
+    private final Counter logFailed;
+
+    private BufferedWriter writer;
+    private boolean partialLine;    //쓰다가 실패해서 줄이 끝나지 않았을 수 있음
+    private long nextOffset;
+    private volatile boolean running;
+    private volatile boolean accepting;
+    private Thread dispatcher;
+
+    public MemberChangeStream(ObjectMapper objectMapper,
+                              @Value("${member.change-log.path:build/change-log/member-changes.log}") String logFile,
+                              @Value("${member.change-log.buffer-size:8192}") int bufferSize,
+                              @Value("${member.change-log.publish-timeout:1s}") Duration publishTimeout,
+                              MeterRegistry meterRegistry) {
+        this.objectMapper = objectMapper;
+        this.logFile = Paths.get(logFile);
+        this.buffer = new ChangeEventRingBuffer<>(bufferSize);
+        this.publishTimeout = publishTimeout;
+        this.dropped = Counter.builder("member.change.dropped").register(meterRegistry);
+        this.logFailed = Counter.builder("member.change.log.failed").register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(logFile.toAbsolutePath().getParent());
+        nextOffset = lastOffset() + 1;
+        writer = openWriter();
+        running = true;
+        accepting = true;
+        dispatcher = new Thread(this::dispatchLoop, "member-change-dispatcher");
+        dispatcher.setDaemon(true);
+        dispatcher.start();
+    }
+
+    /**
+     * 남은 이벤트까지 다 쓰고 종료, 이후 커밋되는 변경은 버린다
+     */
+    @PreDestroy
+    public void stop() throws Exception {
+        accepting = false;
+        running = false;
+        dispatcher.join(TimeUnit.SECONDS.toMillis(10));
+        if (writer != null) writer.close();
+    }
+
+    public void subscribe(Consumer<List<MemberChangeEvent>> subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    public void unsubscribe(Consumer<List<MemberChangeEvent>> subscriber) {
+        subscribers.remove(subscriber);
+    }
+
+    public double droppedCount() {
+        return dropped.count();
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋 후에, 밖이면 바로 발행
+     */
+    public void capture(MemberChangeEvent event) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            publish(List.of(event));
+            return;
+        }
+        @SuppressWarnings("unchecked")
+        List<MemberChangeEvent> pending = (List<MemberChangeEvent>) TransactionSynchronizationManager.getResource(this);
+        if (pending == null) {
+            List<MemberChangeEvent> events = new ArrayList<>();
+            TransactionSynchronizationManager.bindResource(this, events);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    TransactionSynchronizationManager.unbindResourceIfPossible(MemberChangeStream.this);
+                    if (status == STATUS_COMMITTED) publish(events);
+                }
+            });
+            pending = events;
+        }
+        pending.add(event);
+    }
+
+    /**
+     * 버퍼가 가득 차면 전달 스레드가 비울 때까지 기다린다, 한 트랜잭션의 이벤트 전체를 합쳐서 publishTimeout 까지만
+     * 꺼낼 스레드가 없거나 (종료, 비정상 종료) 시간 안에 자리가 안나면 남은 이벤트는 기다리지 않고 버린다
+     * -> 커밋한 트랜잭션이 이벤트 수만큼 오래 멈추지 않도록
+     */
+    private void publish(List<MemberChangeEvent> events) {
+        long deadline = System.nanoTime() + publishTimeout.toNanos();
+        for (int i = 0; i < events.size(); i++) {
+            if (!offer(events.get(i), deadline)) {
+                int rest = events.size() - i;
+                dropped.increment(rest);
+                log.warn("member change events dropped (accepting={}) : {} events from {}", accepting, rest, events.get(i));
+                return;
+            }
+        }
+    }
+
+    private boolean offer(MemberChangeEvent event, long deadline) {
+        while (accepting) {
+            if (buffer.offer(event)) return true;
+            if (System.nanoTime() - deadline > 0) return false;
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(50));
+        }
+        return false;
+    }
+
+    /**
+     * offset 이상인 이벤트를 로그 파일에서 읽기
+     */
+    public List<MemberChangeEvent> readFrom(long offset) throws IOException {
+        List<MemberChangeEvent> events = new ArrayList<>();
+        if (!Files.exists(logFile)) return events;
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "r")) {
+            file.seek(positionOf(file, offset));
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(Channels.newInputStream(file.getChannel()), StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                MemberChangeEvent event = parse(line);
+                if (event != null && event.getOffset() >= offset) events.add(event);
+            }
+        }
+        return events;
+    }
+
+    private void dispatchLoop() {
+        List<MemberChangeEvent> batch = new ArrayList<>(BATCH_SIZE);
+        try {
+            while (running || !buffer.isEmpty()) {
+                if (buffer.drainTo(batch, BATCH_SIZE) == 0) {
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                    continue;
+                }
+                List<MemberChangeEvent> logged = append(batch);
+                batch.clear();
+                for (Consumer<List<MemberChangeEvent>> subscriber : subscribers) {
+                    try {
+                        subscriber.accept(logged);
+                    } catch (RuntimeException e) {
+                        log.warn("member change subscriber failed", e);
+                    }
+                }
+            }
+        } catch (RuntimeException | Error e) {
+            log.error("member change dispatcher died, further events are dropped", e);
+            throw e;
+        } finally {
+            accepting = false;     //꺼낼 스레드가 없으니 publish 가 기다리지 않도록
+        }
+    }
+
+    /**
+     * 묶음을 한번에 써서 flush, 실패하면 로그에는 없지만 구독자에게는 전달한다
+     */
+    private List<MemberChangeEvent> append(List<MemberChangeEvent> batch) {
+        List<MemberChangeEvent> logged = new ArrayList<>(batch.size());
+        for (MemberChangeEvent event : batch) logged.add(event.withOffset(nextOffset++));
+        try {
+            if (writer == null) writer = openWriter();
+            StringBuilder lines = new StringBuilder();
+            if (partialLine) lines.append(System.lineSeparator());   //지난번에 끊긴 줄과 붙지 않도록
+            for (MemberChangeEvent event : logged) {
+                lines.append(objectMapper.writeValueAsString(event)).append(System.lineSeparator());
+            }
+            partialLine = true;
+            writer.write(lines.toString());
+            writer.flush();
+            partialLine = false;
+        } catch (IOException e) {
+            closeQuietly();     //버퍼에 남은 내용이 다음 묶음과 같이 다시 쓰이지 않도록 새로 연다
+            logFailed.increment(logged.size());
+            log.error("member change log append failed, offset {} ~ {} not logged",
+                    logged.get(0).getOffset(), logged.get(logged.size() - 1).getOffset(), e);
+        }
+        return logged;
+    }
+
+    private BufferedWriter openWriter() throws IOException {
+        return Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    private void closeQuietly() {
+        try {
+            writer.close();
+        } catch (IOException | RuntimeException ignored) {
+            //이미 실패한 writer
+        }
+        writer = null;
+    }
+
+    /**
+     * 마지막 줄만 읽는다 (뒤에서부터)
+     */
+    private long lastOffset() throws IOException {
+        if (!Files.exists(logFile)) return -1;
+        try (RandomAccessFile file = new RandomAccessFile(logFile.toFile(), "r")) {
+            long end = file.length();
+            while (end > 0) {
+                long start = lineStartBefore(file, end);
+                file.seek(start);
+                MemberChangeEvent event = parse(readLine(file));
+                if (event != null) return event.getOffset();
+                end = start;    //빈 줄, 쓰다 끊긴 줄은 건너뛴다
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * offset 이상인 첫 줄의 위치 (파일 안에서 offset 은 증가하므로 이진 탐색)
+     */
+    private long positionOf(RandomAccessFile file, long offset) throws IOException {
+        long lo = 0;
+        long hi = file.length();
+        while (lo < hi) {
+            long mid = (lo + hi) >>> 1;
+            Long found = firstOffsetFrom(file, mid);
+            if (found == null || found >= offset) hi = mid;
+            else lo = mid + 1;
+        }
+        return lineStartFrom(file, lo);
+    }
+
+    /**
+     * position 이후 처음 시작하는 줄의 offset, 없으면 null
+     */
+    private Long firstOffsetFrom(RandomAccessFile file, long position) throws IOException {
+        file.seek(lineStartFrom(file, position));
+        while (file.getFilePointer() < file.length()) {
+            MemberChangeEvent event = parse(readLine(file));
+            if (event != null) return event.getOffset();
+        }
+        return null;
+    }
+
+    private static long lineStartFrom(RandomAccessFile file, long position) throws IOException {
+        if (position == 0) return 0;
+        file.seek(position - 1);
+        int b;
+        while ((b = file.read()) != -1 && b != '\n') {
+            //줄 끝까지
+        }
+        return file.getFilePointer();
+    }
+
+    private static long lineStartBefore(RandomAccessFile file, long end) throws IOException {
+        long position = end - 1;    //end 바로 앞은 이 줄의 줄바꿈일 수 있음
+        while (position > 0) {
+            file.seek(position - 1);
+            if (file.read() == '\n') return position;
+            position--;
+        }
+        return 0;
+    }
+
+    private static String readLine(RandomAccessFile file) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int b;
+        while ((b = file.read()) != -1 && b != '\n') line.write(b);
+        return line.toString(StandardCharsets.UTF_8);
+    }
+
+    private MemberChangeEvent parse(String line) {
+        if (line.isBlank()) return null;
+        try {
+            return objectMapper.readValue(line, MemberChangeEvent.class);
+        } catch (IOException e) {
+            log.debug("broken change log line skipped : {}", line);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.change;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Member, Team 테이블 변경 카운터 (ETag 로 사용)
+ * - 엔티티 저장/수정/삭제, 벌크 연산(execute()) 모두 커밋된 뒤에 +1
+ * - 커밋 전에 올리면 커밋 전 데이터로 새 ETag 를 만들어버릴 수 있어서 afterCommit 에서 올린다
+ * - 카운터는 프로세스마다 0 부터 시작하므로 ETag 에 프로세스 epoch 를 붙인다
+ *   (재시작 후, 다른 서버에서 예전 ETag 가 다른 데이터와 우연히 맞아 304 가 나가지 않도록)
+ * 이 서버에서 일어난 쓰기만 센다 -> 다른 서버의 쓰기는 이 서버 ETag 를 바꾸지 않음
+ */
+@Component
+public class MemberDataVersion {
+
+    private final String epoch = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public String eTag() {
+        return eTag("");
+    }
+
+    /**
+     * 같은 URL 의 다른 표현 (ex. 바이너리) 은 suffix 로 ETag 를 구분
+     */
+    public String eTag(String suffix) {
+        return "\"members-" + epoch + "-" + version.get() + suffix + "\"";
+    }
+
+    /**
+     * 트랜잭션 안이면 커밋 후에, 밖이면 바로 변경 표시
+     */
+    public void markChanged() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            version.incrementAndGet();
+            return;
+        }
+        //한 트랜잭션에서 여러번 호출되어도 한번만 등록
+        if (TransactionSynchronizationManager.hasResource(this)) return;
+        TransactionSynchronizationManager.bindResource(this, Boolean.TRUE);
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                TransactionSynchronizationManager.unbindResourceIfPossible(MemberDataVersion.this);
+                if (status == STATUS_COMMITTED) version.incrementAndGet();
+            }
+        });
+    }
+}
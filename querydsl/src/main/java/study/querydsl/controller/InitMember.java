@@ -1,12 +1,16 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.Team;
+import study.querydsl.fixture.FixtureSpec;
+import study.querydsl.fixture.MemberFixtures;
 
-import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.transaction.Transactional;
@@ -17,13 +21,27 @@ import javax.transaction.Transactional;
 
 /**
  * 테스트 데이터 입력
+ * - 요청을 받을 수 있게 된 뒤에 (ApplicationReadyEvent) 입력해서 시작 시간에 포함되지 않게
+ * - 이미 데이터가 있으면 (fast-startup 프로필은 스키마를 다시 만들지 않음) 건너뛴다
  */
 public class InitMember {
 
     private final InitMemberService initMemberService;
+    private final MemberFixtures memberFixtures;
+    private final Environment environment;
 
-    @PostConstruct
+    @EventListener(ApplicationReadyEvent.class)
     public void init() {
+        //member.fixture.members 가 있으면 대용량 스냅샷 데이터로
+        int members = environment.getProperty("member.fixture.members", Integer.class, 0);
+        if (members > 0) {
+            memberFixtures.load(FixtureSpec.builder()
+                    .teams(environment.getProperty("member.fixture.teams", Integer.class, 10))
+                    .members(members)
+                    .build());
+            return;
+        }
+        if (initMemberService.seeded()) return;
         initMemberService.init();
     }
 
@@ -32,6 +50,13 @@ public class InitMember {
         @PersistenceContext
         private EntityManager em;
 
+        public boolean seeded() {
+            return !em.createQuery("select m.id from Member m", Long.class)
+                    .setMaxResults(1)
+                    .getResultList()
+                    .isEmpty();
+        }
+
         @Transactional
         public void init() {
             Team teamA = new Team("teamA");
@@ -1,31 +1,133 @@
 package study.querydsl.controller;
 
 import lombok.RequiredArgsConstructor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.NativeWebRequest;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import study.querydsl.change.MemberDataVersion;
 import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamBinaryWriter;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.repository.InvalidSortException;
 import study.querydsl.repository.MemberRepository;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 회원 검색 API
+ * - ETag 는 Member, Team 변경 카운터 -> 바뀐게 없으면 DB 조회 없이 304 Not Modified
+ * - Accept: application/x-member-team 이면 json 대신 바이너리로 (대량 조회용)
+ *   같은 URL 이므로 Vary: Accept, 바이너리는 ETag 도 따로 (-bin) -> 캐시가 다른 표현으로 응답하지 않도록
+ * - 검색은 SearchExecutor 로 실행 (엔드포인트별 타임아웃, 비용 등급별 동시 실행 제한, 연결 끊기면 쿼리 취소)
+ */
 @RestController
 @RequiredArgsConstructor
 public class MemberController {
 
+    private static final String BINARY_ETAG_SUFFIX = "-bin";
+
     private final MemberRepository memberRepository;
+    private final MemberDataVersion memberDataVersion;
+    private final SearchExecutor searchExecutor;
 
     @GetMapping("/v1/members")
-    public ResponseEntity searchMemberV1(MemberSearchCondition condition) {
-        return ResponseEntity.ok(memberRepository.search(condition));
+    public WebAsyncTask<ResponseEntity<List<MemberTeamDto>>> searchMemberV1(MemberSearchCondition condition, WebRequest request) {
+        String eTag = memberDataVersion.eTag();    //조회 전에 읽어야 조회 중 변경이 있어도 다음 요청에서 다시 조회됨
+        varyByAccept(request);
+        if (request.checkNotModified(eTag)) return null;
+        return searchExecutor.submit("v1", condition, eTag, () -> memberRepository.search(condition));
+    }
+
+    /**
+     * 조회 결과를 List 로 모으지 않고 응답 스트림에 한 행씩 바로 쓴다
+     */
+    @GetMapping(value = "/v1/members", produces = MemberTeamBinaryWriter.MEDIA_TYPE)
+    public void searchMemberV1Binary(MemberSearchCondition condition, WebRequest request,
+                                     HttpServletResponse response) throws IOException {
+        String eTag = memberDataVersion.eTag(BINARY_ETAG_SUFFIX);
+        varyByAccept(request);
+        if (request.checkNotModified(eTag)) return;
+
+        response.setContentType(MemberTeamBinaryWriter.MEDIA_TYPE);
+        response.setHeader(HttpHeaders.ETAG, eTag);
+        MemberTeamBinaryWriter writer = new MemberTeamBinaryWriter(response.getOutputStream());
+        searchExecutor.run("binary", condition, () -> memberRepository.searchEach(condition, writer::write));
+        writer.finish();
     }
 
     @GetMapping("/v2/members")
-    public ResponseEntity searchMemberV2(MemberSearchCondition condition, Pageable pageable) {
-        return ResponseEntity.ok(memberRepository.searchPageSimple(condition, pageable));
+    public WebAsyncTask<ResponseEntity<Page<MemberTeamDto>>> searchMemberV2(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        String eTag = memberDataVersion.eTag();
+        if (request.checkNotModified(eTag)) return null;
+        return searchExecutor.submit("v2", condition, eTag, () -> memberRepository.searchPageSimple(condition, pageable));
     }
 
     @GetMapping("/v3/members")
-    public ResponseEntity searchMemberV3(MemberSearchCondition condition, Pageable pageable) {
-        return ResponseEntity.ok(memberRepository.searchPageComplex(condition, pageable));
+    public WebAsyncTask<ResponseEntity<Page<MemberTeamDto>>> searchMemberV3(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        String eTag = memberDataVersion.eTag();
+        if (request.checkNotModified(eTag)) return null;
+        return searchExecutor.submit("v3", condition, eTag, () -> memberRepository.searchPageComplex(condition, pageable));
+    }
+
+    /**
+     * content, total 조회 방식을 조건 조합별로 걸린 시간을 보고 고른다 (member.paging.* 지표)
+     */
+    @GetMapping("/v4/members")
+    public WebAsyncTask<ResponseEntity<Page<MemberTeamDto>>> searchMemberV4(MemberSearchCondition condition, Pageable pageable, WebRequest request) {
+        String eTag = memberDataVersion.eTag();
+        if (request.checkNotModified(eTag)) return null;
+        return searchExecutor.submit("v4", condition, eTag, () -> memberRepository.searchPageAdaptive(condition, pageable));
+    }
+
+    /**
+     * 팀별 상위 limit 명 ex) /v1/members/top-per-team?sort=age,desc&limit=3
+     */
+    @GetMapping("/v1/members/top-per-team")
+    public WebAsyncTask<ResponseEntity<List<MemberTeamDto>>> searchTopPerTeam(MemberSearchCondition condition, Sort sort,
+                                                                              @RequestParam(defaultValue = "3") int limit,
+                                                                              WebRequest request) {
+        String eTag = memberDataVersion.eTag();
+        if (request.checkNotModified(eTag)) return null;
+        return searchExecutor.submit("topPerTeam", condition, eTag, () -> memberRepository.searchTopPerTeam(condition, sort, limit));
+    }
+
+    /**
+     * 304 응답에도 붙도록 조건부 요청 확인 전에 설정 (비동기 응답의 헤더에도 그대로 남는다)
+     */
+    private static void varyByAccept(WebRequest request) {
+        HttpServletResponse response = ((NativeWebRequest) request).getNativeResponse(HttpServletResponse.class);
+        if (response != null) response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
+
+    /**
+     * 동시 실행 제한에 걸렸거나 마감 시간 안에 끝나지 않음 -> 잠시 후 다시 시도
+     */
+    @ExceptionHandler({SearchRejectedException.class, QueryTimeoutException.class, TaskRejectedException.class})
+    public ResponseEntity<Void> searchUnavailable(RuntimeException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .build();
+    }
+
+    /**
+     * 허용하지 않은 정렬 필드, 인덱스 없는 정렬로 너무 깊은 페이지
+     */
+    @ExceptionHandler(InvalidSortException.class)
+    public ResponseEntity<String> invalidSort(InvalidSortException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 }
@@ -0,0 +1,109 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 비용 등급별 검색 동시 실행 제한
+ * - 자리가 없으면 queue 개수까지만 queueTimeout (또는 요청 마감) 동안 기다린다
+ * - 대기열이 꽉 찼거나 기다려도 자리가 안나면 SearchRejectedException (503)
+ * - 지표 : member.search.queue (대기 시간), member.search.rejected (거절 수, reason = queue_full / queue_timeout)
+ *         member.search.active, member.search.waiting
+ */
+@Component
+public class SearchAdmission {
+
+    private final Map<SearchCost, Lane> lanes = new EnumMap<>(SearchCost.class);
+    private final long queueTimeoutNanos;
+
+    public SearchAdmission(SearchProperties properties, MeterRegistry meterRegistry) {
+        this.queueTimeoutNanos = properties.getQueueTimeout().toNanos();
+        for (SearchCost cost : SearchCost.values()) {
+            lanes.put(cost, new Lane(cost, properties.permitsOf(cost), properties.getQueue(), meterRegistry));
+        }
+    }
+
+    /**
+     * 자리를 얻을 때까지 기다림 (얻은 Permit 은 꼭 close)
+     * @param deadlineNanos 요청 마감 (System.nanoTime 기준)
+     */
+    public Permit admit(SearchCost cost, long deadlineNanos) {
+        return lanes.get(cost).admit(Math.min(queueTimeoutNanos, deadlineNanos - System.nanoTime()));
+    }
+
+    public interface Permit extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    private static class Lane {
+
+        private final SearchCost cost;
+        private final int queueLimit;
+        private final Semaphore semaphore;
+        private final AtomicInteger waiting = new AtomicInteger();
+        private final Timer queueTime;
+        private final Counter queueFull;
+        private final Counter queueTimeout;
+
+        Lane(SearchCost cost, int permits, int queueLimit, MeterRegistry meterRegistry) {
+            this.cost = cost;
+            this.queueLimit = queueLimit;
+            this.semaphore = new Semaphore(permits, true);
+            this.queueTime = Timer.builder("member.search.queue")
+                    .tag("cost", cost.tag())
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry);
+            this.queueFull = rejected(meterRegistry, cost, "queue_full");
+            this.queueTimeout = rejected(meterRegistry, cost, "queue_timeout");
+            Gauge.builder("member.search.active", semaphore, s -> permits - s.availablePermits())
+                    .tag("cost", cost.tag())
+                    .register(meterRegistry);
+            Gauge.builder("member.search.waiting", waiting, AtomicInteger::get)
+                    .tag("cost", cost.tag())
+                    .register(meterRegistry);
+        }
+
+        Permit admit(long waitNanos) {
+            if (semaphore.tryAcquire()) {
+                queueTime.record(0, TimeUnit.NANOSECONDS);
+                return semaphore::release;
+            }
+            if (waiting.incrementAndGet() > queueLimit) {
+                waiting.decrementAndGet();
+                queueFull.increment();
+                throw new SearchRejectedException(cost, "queue_full");
+            }
+            long start = System.nanoTime();
+            try {
+                if (!semaphore.tryAcquire(Math.max(0, waitNanos), TimeUnit.NANOSECONDS)) {
+                    queueTimeout.increment();
+                    throw new SearchRejectedException(cost, "queue_timeout");
+                }
+                return semaphore::release;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SearchRejectedException(cost, "interrupted");
+            } finally {
+                waiting.decrementAndGet();
+                queueTime.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        }
+
+        private static Counter rejected(MeterRegistry meterRegistry, SearchCost cost, String reason) {
+            return Counter.builder("member.search.rejected")
+                    .tag("cost", cost.tag())
+                    .tag("reason", reason)
+                    .register(meterRegistry);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package study.querydsl.controller;
+
+import study.querydsl.dto.MemberSearchCondition;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * 검색 조건으로 어림잡은 쿼리 비용 등급 (등급별로 동시 실행 수를 따로 제한)
+ * - CHEAP : 회원명 일치 (결과가 몇 건 안됨)
+ * - MODERATE : 팀명 일치, 나이 범위가 양쪽 다 막혀있음
+ * - EXPENSIVE : 조건 없음, 나이 한쪽만 -> 사실상 전체 조회
+ */
+public enum SearchCost {
+    CHEAP, MODERATE, EXPENSIVE;
+
+    public static SearchCost of(MemberSearchCondition condition) {
+        if (hasText(condition.getUsername())) return CHEAP;
+        if (hasText(condition.getTeamName())) return MODERATE;
+        if (condition.getAgeGoe() != null && condition.getAgeLoe() != null) return MODERATE;
+        return EXPENSIVE;
+    }
+
+    String tag() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,166 @@
+package study.querydsl.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.context.request.async.WebAsyncTask;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.repository.QueryTimeout;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.time.Duration;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * 검색 실행기
+ * 1. 요청이 도착한 시점부터 엔드포인트별 마감 시간을 잰다 (대기 시간 포함)
+ * 2. 비용 등급별 동시 실행 제한 (SearchAdmission) 을 통과해야 실행
+ * 3. 남은 시간은 JDBC query timeout 으로 전달 (QueryTimeout)
+ * 4. 비동기(WebAsyncTask)로 실행 -> 응답 타임아웃, 클라이언트 연결 끊김(onError) 시 실행 중인 쿼리를 취소 (Session.cancelQuery)
+ */
+@Slf4j
+@Component
+public class SearchExecutor {
+
+    public static final String TASK_EXECUTOR_BEAN = "memberSearchTaskExecutor";
+
+    //JDBC 타임아웃이 먼저 나도록 비동기 타임아웃은 조금 늦게
+    private static final long ASYNC_TIMEOUT_SLACK_MILLIS = 1000;
+
+    private final SearchAdmission searchAdmission;
+    private final SearchProperties properties;
+    private final EntityManager em;
+    private final TransactionTemplate readOnlyTransaction;
+    private final AsyncTaskExecutor executor;
+    private final ThreadPoolTaskExecutor pool;
+
+    /**
+     * @param customExecutor memberSearchTaskExecutor 빈이 있으면 그걸로 실행 (ex. 가상 스레드), 없으면 전용 스레드 풀
+     */
+    public SearchExecutor(SearchAdmission searchAdmission, SearchProperties properties, EntityManager em,
+                          PlatformTransactionManager transactionManager,
+                          @Qualifier(TASK_EXECUTOR_BEAN) ObjectProvider<AsyncTaskExecutor> customExecutor) {
+        this.searchAdmission = searchAdmission;
+        this.properties = properties;
+        this.em = em;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        AsyncTaskExecutor custom = customExecutor.getIfAvailable();
+        this.pool = custom == null ? createPool(properties) : null;
+        this.executor = custom == null ? pool : custom;
+    }
+
+    /**
+     * 대기 중인 요청도 스레드를 잡고 있으므로 (실행 + 대기) 만큼, 그 이상은 바로 거절 (TaskRejectedException)
+     */
+    private static ThreadPoolTaskExecutor createPool(SearchProperties properties) {
+        int threads = 0;
+        for (SearchCost cost : SearchCost.values()) threads += properties.permitsOf(cost) + properties.getQueue();
+        ThreadPoolTaskExecutor pool = new ThreadPoolTaskExecutor();
+        pool.setCorePoolSize(threads);
+        pool.setMaxPoolSize(threads);
+        pool.setQueueCapacity(0);
+        pool.setThreadNamePrefix("member-search-");
+        pool.initialize();
+        return pool;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /**
+     * 비동기로 실행해서 200 + ETag 로 응답
+     */
+    public <T> WebAsyncTask<ResponseEntity<T>> submit(String endpoint, MemberSearchCondition condition,
+                                                        String eTag, Supplier<T> search) {
+        Duration timeout = properties.timeoutOf(endpoint);
+        long deadline = System.nanoTime() + timeout.toNanos();
+        SearchCost cost = SearchCost.of(condition);
+        RunningQuery running = new RunningQuery();
+
+        WebAsyncTask<ResponseEntity<T>> task = new WebAsyncTask<>(
+                timeout.toMillis() + ASYNC_TIMEOUT_SLACK_MILLIS,
+                executor,
+                () -> ResponseEntity.ok().eTag(eTag).body(execute(cost, deadline, running, search)));
+        task.onTimeout(() -> {
+            running.cancel();
+            log.warn("search timeout endpoint={} cost={} timeout={}", endpoint, cost, timeout);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        });
+        task.onError(() -> {
+            //클라이언트가 끊고 나간 경우 -> 결과를 받을 곳이 없으므로 DB 작업도 멈춘다
+            running.cancel();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        });
+        return task;
+    }
+
+    /**
+     * 요청 스레드에서 바로 실행 (응답 스트림에 직접 쓰는 경우)
+     * - 연결이 끊기면 쓰기에서 IOException 이 나서 그대로 중단된다
+     */
+    public <T> T run(String endpoint, MemberSearchCondition condition, Supplier<T> search) {
+        long deadline = System.nanoTime() + properties.timeoutOf(endpoint).toNanos();
+        try (SearchAdmission.Permit permit = searchAdmission.admit(SearchCost.of(condition), deadline)) {
+            return QueryTimeout.within(deadline, search);
+        }
+    }
+
+    private <T> T execute(SearchCost cost, long deadline, RunningQuery running, Supplier<T> search) {
+        try (SearchAdmission.Permit permit = searchAdmission.admit(cost, deadline)) {
+            return readOnlyTransaction.execute(status -> {
+                running.bind(em.unwrap(Session.class));
+                try {
+                    return QueryTimeout.within(deadline, search);
+                } finally {
+                    running.unbind();
+                }
+            });
+        }
+    }
+
+    /**
+     * 다른 스레드(타임아웃, 에러 콜백)에서 실행 중인 쿼리를 취소하기 위한 핸들
+     */
+    private static class RunningQuery {
+
+        private final AtomicReference<Session> session = new AtomicReference<>();
+        private volatile boolean cancelled;
+
+        void bind(Session current) {
+            if (cancelled) throw new CancellationException("실행 전에 취소된 검색");
+            session.set(current);
+            //bind 와 cancel 이 엇갈렸을 수 있으므로 다시 확인
+            if (cancelled) throw new CancellationException("실행 전에 취소된 검색");
+        }
+
+        void unbind() {
+            session.set(null);
+        }
+
+        void cancel() {
+            cancelled = true;
+            Session current = session.getAndSet(null);
+            if (current == null) return;
+            try {
+                current.cancelQuery();
+            } catch (RuntimeException e) {
+                log.debug("search cancel failed", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 검색 API 타임아웃, 동시 실행 제한 설정 (member.search.*)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "member.search")
+public class SearchProperties {
+
+    /**
+     * 엔드포인트별 마감 시간 (없으면 defaultTimeout)
+     */
+    private Map<String, Duration> timeout = new HashMap<>();
+    private Duration defaultTimeout = Duration.ofSeconds(5);
+
+    /**
+     * 비용 등급별 동시 실행 수
+     */
+    private Map<SearchCost, Integer> permits = new EnumMap<>(Map.of(
+            SearchCost.CHEAP, 32,
+            SearchCost.MODERATE, 8,
+            SearchCost.EXPENSIVE, 2));
+
+    /**
+     * 등급별로 자리를 기다릴 수 있는 요청 수, 최대 대기 시간
+     */
+    private int queue = 16;
+    private Duration queueTimeout = Duration.ofSeconds(1);
+
+    public Duration timeoutOf(String endpoint) {
+        return timeout.getOrDefault(endpoint, defaultTimeout);
+    }
+
+    public int permitsOf(SearchCost cost) {
+        return permits.getOrDefault(cost, 1);
+    }
+}
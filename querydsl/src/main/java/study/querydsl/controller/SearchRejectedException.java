@@ -0,0 +1,19 @@
+package study.querydsl.controller;
+
+import lombok.Getter;
+
+/**
+ * 동시 실행 제한에 걸려서 검색을 실행하지 않음 (503)
+ */
+@Getter
+public class SearchRejectedException extends RuntimeException {
+
+    private final SearchCost cost;
+    private final String reason;
+
+    public SearchRejectedException(SearchCost cost, String reason) {
+        super("검색 거절 : " + cost + " (" + reason + ")");
+        this.cost = cost;
+        this.reason = reason;
+    }
+}
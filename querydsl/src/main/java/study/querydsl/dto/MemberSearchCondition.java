@@ -11,12 +11,19 @@ public class MemberSearchCondition {
     private String teamName;
     private Integer ageGoe;     //Integer 를 쓰는이유 : 값이 null 일 수도 있어서
     private Integer ageLoe;
+    private boolean ignoreCase;     //회원명을 대소문자, 공백, 유니코드 표기 차이 없이 (Member.normalizedUsername)
 
-    @Builder
     public MemberSearchCondition(String username, String teamName, Integer ageGoe, Integer ageLoe) {
+        this(username, teamName, ageGoe, ageLoe, false);
+    }
+
+    //public 생성자가 하나여야 요청 파라미터 바인딩이 그 생성자를 쓴다 (ignoreCase 는 setter 로)
+    @Builder
+    private MemberSearchCondition(String username, String teamName, Integer ageGoe, Integer ageLoe, boolean ignoreCase) {
         this.username = username;
         this.teamName = teamName;
         this.ageGoe = ageGoe;
         this.ageLoe = ageLoe;
+        this.ignoreCase = ignoreCase;
     }
 }
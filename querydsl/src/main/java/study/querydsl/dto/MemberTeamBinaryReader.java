@@ -0,0 +1,62 @@
+package study.querydsl.dto;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import static study.querydsl.dto.MemberTeamBinaryWriter.*;
+
+/**
+ * MemberTeamBinaryWriter 로 쓴 응답 읽기 (클라이언트, 테스트용)
+ */
+public class MemberTeamBinaryReader {
+
+    private final DataInputStream in;
+
+    public MemberTeamBinaryReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(new BufferedInputStream(in, 8192));
+        if (this.in.readByte() != 'M' || this.in.readByte() != 'T')
+            throw new IOException("member-team 바이너리 포맷이 아님");
+        byte version = this.in.readByte();
+        if (version != VERSION) throw new IOException("지원하지 않는 버전 : " + version);
+    }
+
+    /**
+     * 행을 하나씩 넘겨주고 읽은 행 수를 반환
+     */
+    public long readAll(Consumer<MemberTeamDto> action) throws IOException {
+        long rows = 0;
+        int flags;
+        while ((flags = in.readUnsignedByte()) != END) {
+            long memberId = in.readLong();
+            int age = in.readInt();
+            String username = (flags & HAS_USERNAME) != 0 ? readString() : null;
+            Long teamId = (flags & HAS_TEAM) != 0 ? in.readLong() : null;
+            String teamName = (flags & HAS_TEAM_NAME) != 0 ? readString() : null;
+            action.accept(new MemberTeamDto(memberId, username, age, teamId, teamName));
+            rows++;
+        }
+        return rows;
+    }
+
+    private String readString() throws IOException {
+        byte[] bytes = new byte[readVarInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int readVarInt() throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+}
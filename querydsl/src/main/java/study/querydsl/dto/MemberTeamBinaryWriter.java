@@ -0,0 +1,86 @@
+package study.querydsl.dto;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MemberTeamDto 바이너리 포맷 (application/x-member-team)
+ * - 헤더 : "MT" + 버전(1 byte)
+ * - 행 : flags(1 byte) memberId(8) age(4) [username(길이 varint + utf8)] [teamId(8) teamName(길이 varint + utf8)]
+ * - 끝 : flags = END
+ * 조회 결과를 한 행씩 바로 써서 List 를 만들지 않는다
+ */
+public class MemberTeamBinaryWriter {
+
+    public static final String MEDIA_TYPE = "application/x-member-team";
+
+    static final byte VERSION = 1;
+    static final int HAS_USERNAME = 1;
+    static final int HAS_TEAM = 1 << 1;
+    static final int HAS_TEAM_NAME = 1 << 2;
+    static final int END = 0xFF;
+
+    private final DataOutputStream out;
+    private long rows;
+
+    public MemberTeamBinaryWriter(OutputStream out) {
+        this.out = new DataOutputStream(new BufferedOutputStream(out, 8192));
+        try {
+            this.out.writeByte('M');
+            this.out.writeByte('T');
+            this.out.writeByte(VERSION);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(MemberTeamDto dto) {
+        try {
+            int flags = 0;
+            if (dto.getUsername() != null) flags |= HAS_USERNAME;
+            if (dto.getTeamId() != null) flags |= HAS_TEAM;
+            if (dto.getTeamName() != null) flags |= HAS_TEAM_NAME;
+
+            out.writeByte(flags);
+            out.writeLong(dto.getMemberId());
+            out.writeInt(dto.getAge());
+            if (dto.getUsername() != null) writeString(dto.getUsername());
+            if (dto.getTeamId() != null) out.writeLong(dto.getTeamId());
+            if (dto.getTeamName() != null) writeString(dto.getTeamName());
+            rows++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * 끝 표시 쓰고 flush (스트림은 닫지 않음)
+     */
+    public long finish() {
+        try {
+            out.writeByte(END);
+            out.flush();
+            return rows;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
@@ -1,10 +1,19 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.Hibernate;
+import org.hibernate.annotations.DynamicUpdate;
 
 import javax.persistence.*;
+import java.text.Normalizer;
+import java.util.Locale;
 
 @Entity
+@DynamicUpdate  //변경된 컬럼만 update
+@Table(indexes = {  //검색 조건, 정렬 (MemberSearchSort)
+        @Index(name = "idx_member_username", columnList = "username"),
+        @Index(name = "idx_member_normalized_username", columnList = "normalized_username"),
+        @Index(name = "idx_member_age", columnList = "age")})
 @Getter
 @NoArgsConstructor(access = AccessLevel.PROTECTED)
 @ToString(of = {"id", "username", "age"})
@@ -15,6 +24,13 @@ public class Member {
     private String username;
     private int age;
 
+    //대소문자, 앞뒤 공백, 유니코드 표기 차이를 무시하고 찾을 때 (lower(username) 대신 인덱스로)
+    @Column(name = "normalized_username")
+    private String normalizedUsername;
+
+    @Version    //낙관적 락 (동시에 수정하면 나중 커밋이 실패)
+    private Long version;
+
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "team_id")
     private Team team;
@@ -33,8 +49,36 @@ public class Member {
         if(team != null) changeTeam(team);
     }
 
+    /**
+     * NFKC 정규화 (전각 -> 반각, 합성 문자 통일) + 앞뒤 공백 제거 + 소문자 (Locale.ROOT)
+     */
+    public static String normalizeUsername(String username) {
+        if (username == null) return null;
+        return Normalizer.normalize(username, Normalizer.Form.NFKC).trim().toLowerCase(Locale.ROOT);
+    }
+
+    @PrePersist
+    @PreUpdate
+    private void normalize() {
+        this.normalizedUsername = normalizeUsername(username);
+    }
+
+    public void changeAge(int age) {
+        this.age = age;
+    }
+
+    /**
+     * 연관관계 주인은 Member.team 이므로 컬렉션은 이미 로딩된 경우에만 맞춰준다
+     * (로딩 안된 컬렉션에 add 하면 큰 팀은 초기화되거나 대기 작업이 쌓임)
+     */
     public void changeTeam(Team team) {
+        if (membersLoaded(this.team)) this.team.getMembers().remove(this);
         this.team = team;
-        team.getMembers().add(this);
+        if (membersLoaded(team)) team.getMembers().add(this);
+    }
+
+    //프록시도 초기화하지 않도록 팀부터 확인
+    private static boolean membersLoaded(Team team) {
+        return team != null && Hibernate.isInitialized(team) && Hibernate.isInitialized(team.getMembers());
     }
 }
@@ -0,0 +1,35 @@
+package study.querydsl.entity;
+
+import lombok.*;
+
+import javax.persistence.*;
+import java.io.Serializable;
+
+/**
+ * (팀, 나이 구간) 별 회원 수 요약 (MemberCountSummary 가 관리, 페이지 total 계산용)
+ * - teamId 0 = 팀 없음, ageBucket = floor(age / 10)
+ */
+@Entity
+@Table(name = "member_count_summary")
+@IdClass(MemberCount.Key.class)
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+@ToString
+public class MemberCount {
+    @Id
+    @Column(name = "team_id")
+    private Long teamId;
+    @Id
+    @Column(name = "age_bucket")
+    private Integer ageBucket;
+    private long members;
+
+    @Getter
+    @EqualsAndHashCode
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long teamId;
+        private Integer ageBucket;
+    }
+}
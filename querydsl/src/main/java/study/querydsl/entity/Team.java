@@ -1,6 +1,8 @@
 package study.querydsl.entity;
 
 import lombok.*;
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
 
 import javax.persistence.*;
 import java.util.ArrayList;
@@ -16,7 +18,13 @@ public class Team {
     private Long id;
     private String name;
 
+    /**
+     * 회원이 수백만 명일 수 있으므로 통째로 로딩하지 않는다 (EXTRA)
+     * - size(), isEmpty(), contains() 는 count / exists 쿼리로 처리
+     * - 페이징 조회는 TeamRepository.findMembers, 회원 수는 TeamRepository.countMembers
+     */
     @OneToMany(mappedBy = "team")
+    @LazyCollection(LazyCollectionOption.EXTRA)
     private List<Member> members = new ArrayList<>();
 
     public Team(String name) {
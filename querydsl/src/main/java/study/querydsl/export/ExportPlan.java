@@ -0,0 +1,77 @@
+package study.querydsl.export;
+
+import lombok.Getter;
+import lombok.ToString;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Properties;
+import java.util.function.Supplier;
+
+/**
+ * 내보내기 구간 계획 (export.properties)
+ * - 다시 실행할 때 같은 구간으로 나눠야 끝난 part 파일을 그대로 쓸 수 있어서 파일로 남긴다
+ */
+@Getter
+@ToString
+class ExportPlan {
+
+    static final String FILE = "export.properties";
+
+    private final long minId;
+    private final long maxId;
+    private final int partitions;
+
+    private ExportPlan(long minId, long maxId, int partitions) {
+        this.minId = minId;
+        this.maxId = maxId;
+        this.partitions = partitions;
+    }
+
+    /**
+     * 저장된 계획이 있으면 그대로 (파티션 수 인자는 무시), 없으면 새로 만든다
+     */
+    static ExportPlan loadOrCreate(Path dir, int partitions, Supplier<long[]> idRange) throws IOException {
+        Path file = dir.resolve(FILE);
+        if (Files.exists(file)) {
+            Properties properties = new Properties();
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                properties.load(reader);
+            }
+            return new ExportPlan(
+                    Long.parseLong(properties.getProperty("minId")),
+                    Long.parseLong(properties.getProperty("maxId")),
+                    Integer.parseInt(properties.getProperty("partitions")));
+        }
+
+        long[] range = idRange.get();
+        ExportPlan plan = new ExportPlan(range[0], range[1], Math.max(1, partitions));
+        Properties properties = new Properties();
+        properties.setProperty("minId", String.valueOf(plan.minId));
+        properties.setProperty("maxId", String.valueOf(plan.maxId));
+        properties.setProperty("partitions", String.valueOf(plan.partitions));
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(writer, "member export plan");
+        }
+        return plan;
+    }
+
+    /**
+     * i 번째 구간 [from, to] (마지막 구간이 나머지를 가져감)
+     */
+    long[] range(int partition) {
+        long span = maxId - minId + 1;
+        long size = Math.max(1, (span + partitions - 1) / partitions);
+        long from = minId + size * partition;
+        long to = partition == partitions - 1 ? maxId : Math.min(maxId, from + size - 1);
+        return new long[]{from, to};
+    }
+
+    void delete(Path dir) throws IOException {
+        Files.deleteIfExists(dir.resolve(FILE));
+    }
+}
@@ -0,0 +1,188 @@
+package study.querydsl.export;
+
+import com.mysema.commons.lang.CloseableIterator;
+import com.querydsl.core.Tuple;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.dto.QMemberTeamDto;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * 회원 전체 내보내기 (member_id 범위를 N개로 나눠서 병렬로)
+ * 1. member_id 최소~최대를 N 구간으로 나누고 계획을 export.properties 에 저장
+ * 2. 구간마다 EntityManager(커넥션)를 따로 열어서 part-{i}.csv 로 스트리밍
+ *    (.tmp 에 쓰고 다 쓰면 이름 변경 -> part 파일이 있으면 끝난 구간)
+ * 3. 모든 구간이 끝나면 members.csv 로 합치고 중간 파일 삭제
+ * 중간에 죽으면 같은 디렉토리로 다시 실행 -> 끝난 구간은 건너뛴다
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MemberExportJob {
+
+    static final String RESULT_FILE = "members.csv";
+    static final String HEADER = "member_id,username,age,team_id,team_name";
+    private static final int FETCH_SIZE = 1_000;
+
+    private final EntityManagerFactory emf;
+
+    /**
+     * @param partitions 구간 수
+     * @param threads    동시에 읽을 구간 수 (커넥션 풀 크기보다 작게)
+     */
+    public Path export(Path dir, int partitions, int threads) throws IOException {
+        Files.createDirectories(dir);
+        ExportPlan plan = ExportPlan.loadOrCreate(dir, partitions, this::idRange);
+        log.info("member export plan = {}", plan);
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, plan.getPartitions())));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < plan.getPartitions(); i++) {
+                if (Files.exists(partFile(dir, i))) {
+                    log.info("member export partition {} already done, skip", i);
+                    continue;
+                }
+                int partition = i;
+                futures.add(executor.submit(() -> exportPartition(dir, partition, plan)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("member export interrupted", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("member export failed (다시 실행하면 끝난 구간은 건너뜀)", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return merge(dir, plan);
+    }
+
+    private void exportPartition(Path dir, int partition, ExportPlan plan) {
+        long[] range = plan.range(partition);
+        Path tmp = dir.resolve("part-" + partition + ".csv.tmp");
+
+        EntityManager em = emf.createEntityManager();
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            em.unwrap(Session.class).setDefaultReadOnly(true);
+            em.getTransaction().begin();
+            CloseableIterator<MemberTeamDto> iterator = new JPAQueryFactory(em)
+                    .select(new QMemberTeamDto(
+                            member.id.as("memberId"),
+                            member.username,
+                            member.age,
+                            team.id.as("teamId"),
+                            team.name.as("teamName")))
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(member.id.between(range[0], range[1]))
+                    .orderBy(member.id.asc())
+                    .setHint(QueryHints.FETCH_SIZE, FETCH_SIZE)
+                    .iterate();
+            long rows = 0;
+            try {
+                while (iterator.hasNext()) {
+                    writer.write(toCsv(iterator.next()));
+                    writer.newLine();
+                    rows++;
+                }
+            } finally {
+                iterator.close();
+            }
+            em.getTransaction().commit();
+            writer.close();
+
+            Files.move(tmp, partFile(dir, partition), StandardCopyOption.ATOMIC_MOVE);
+            log.info("member export partition {} [{} ~ {}] done, rows = {}", partition, range[0], range[1], rows);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (em.getTransaction().isActive()) em.getTransaction().rollback();
+            em.close();
+        }
+    }
+
+    /**
+     * 구간 순서대로 이어붙이기 (구간이 member_id 순이라 결과도 member_id 순)
+     */
+    private Path merge(Path dir, ExportPlan plan) throws IOException {
+        Path tmp = dir.resolve(RESULT_FILE + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            writer.write(HEADER);
+            writer.newLine();
+            writer.flush();
+        }
+        try (OutputStream out = Files.newOutputStream(tmp, StandardOpenOption.APPEND)) {
+            for (int i = 0; i < plan.getPartitions(); i++) {
+                Files.copy(partFile(dir, i), out);
+            }
+        }
+        Path result = dir.resolve(RESULT_FILE);
+        Files.move(tmp, result, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        for (int i = 0; i < plan.getPartitions(); i++) {
+            Files.deleteIfExists(partFile(dir, i));
+        }
+        plan.delete(dir);
+        return result;
+    }
+
+    private long[] idRange() {
+        EntityManager em = emf.createEntityManager();
+        try {
+            Tuple tuple = new JPAQueryFactory(em)
+                    .select(member.id.min(), member.id.max())
+                    .from(member)
+                    .fetchOne();
+            Long min = tuple.get(member.id.min());
+            Long max = tuple.get(member.id.max());
+            return min == null ? new long[]{0, -1} : new long[]{min, max};
+        } finally {
+            em.close();
+        }
+    }
+
+    static Path partFile(Path dir, int partition) {
+        return dir.resolve("part-" + partition + ".csv");
+    }
+
+    static String toCsv(MemberTeamDto dto) {
+        return dto.getMemberId() + "," + escape(dto.getUsername()) + "," + dto.getAge() + ","
+                + (dto.getTeamId() == null ? "" : dto.getTeamId()) + "," + escape(dto.getTeamName());
+    }
+
+    private static String escape(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            return value;
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
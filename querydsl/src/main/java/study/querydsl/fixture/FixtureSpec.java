@@ -0,0 +1,57 @@
+package study.querydsl.fixture;
+
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Random;
+
+/**
+ * 테스트, 벤치마크용 데이터 모양
+ * - team0 ~ team{teams-1}, member0 ~ member{members-1}
+ * - 같은 spec (+ seed) 이면 항상 같은 데이터 -> 스냅샷 파일 이름으로 사용
+ */
+@Getter
+@ToString
+@Builder
+public class FixtureSpec {
+
+    public enum TeamDistribution {
+        UNIFORM,    //팀마다 비슷한 인원
+        SKEWED      //앞쪽 팀에 몰림 (팀 크기가 크게 차이날 때)
+    }
+
+    public enum AgeDistribution {
+        UNIFORM,    //0 ~ 99
+        NORMAL      //평균 40, 표준편차 12 (0 ~ 99 로 자름)
+    }
+
+    @Builder.Default
+    private final int teams = 10;
+    @Builder.Default
+    private final int members = 10_000;
+    @Builder.Default
+    private final TeamDistribution teamDistribution = TeamDistribution.UNIFORM;
+    @Builder.Default
+    private final AgeDistribution ageDistribution = AgeDistribution.UNIFORM;
+    @Builder.Default
+    private final long seed = 42L;
+
+    public String key() {
+        return "t" + teams + "-m" + members + "-" + teamDistribution + "-" + ageDistribution + "-s" + seed;
+    }
+
+    int nextTeam(Random random) {
+        if (teamDistribution == TeamDistribution.SKEWED) {
+            return (int) (teams * Math.pow(random.nextDouble(), 3));
+        }
+        return random.nextInt(teams);
+    }
+
+    int nextAge(Random random) {
+        if (ageDistribution == AgeDistribution.NORMAL) {
+            return (int) Math.max(0, Math.min(99, Math.round(40 + random.nextGaussian() * 12)));
+        }
+        return random.nextInt(100);
+    }
+}
@@ -0,0 +1,162 @@
+package study.querydsl.fixture;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.change.MemberDataVersion;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.summary.MemberCountSummary;
+
+import javax.persistence.EntityManager;
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 대용량 테스트, 벤치마크 데이터 (H2 전용)
+ * 1. 처음 한 번은 spec 대로 em.persist 로 만들고 H2 SCRIPT 로 DB 전체를 압축 파일로 떠둔다
+ * 2. 다음부터는 DROP ALL OBJECTS + RUNSCRIPT 로 파일에서 바로 복원 (스키마, 시퀀스 값 포함)
+ * - 파일 이름 = spec + 현재 스키마(테이블, 컬럼) 해시 -> 엔티티가 바뀌면 자동으로 다시 만든다
+ * - JPA 를 거치지 않고 복원하므로 호출하는 쪽 영속성 컨텍스트에 엔티티가 없어야 한다
+ */
+@Slf4j
+@Component
+public class MemberFixtures {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    private final EntityManager em;
+    private final TransactionTemplate transactionTemplate;
+    private final JdbcTemplate jdbcTemplate;
+    private final MemberDataVersion memberDataVersion;
+    private final MemberCountSummary memberCountSummary;
+    private final Path dir;
+
+    public MemberFixtures(EntityManager em, TransactionTemplate transactionTemplate, DataSource dataSource,
+                          MemberDataVersion memberDataVersion, MemberCountSummary memberCountSummary,
+                          @Value("${member.fixture.dir:build/fixtures}") String dir) {
+        this.em = em;
+        this.transactionTemplate = transactionTemplate;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.memberDataVersion = memberDataVersion;
+        this.memberCountSummary = memberCountSummary;
+        this.dir = Paths.get(dir);
+    }
+
+    /**
+     * 스냅샷이 있으면 복원, 없으면 만들고 스냅샷 저장
+     */
+    public void load(FixtureSpec spec) {
+        checkH2();
+        Path snapshot = snapshotOf(spec);
+        long start = System.nanoTime();
+        if (Files.exists(snapshot)) {
+            restore(snapshot);
+            log.info("fixture {} restored in {}ms", spec.key(), (System.nanoTime() - start) / 1_000_000);
+        } else {
+            generate(spec);
+            save(snapshot);
+            log.info("fixture {} generated in {}ms -> {}", spec.key(), (System.nanoTime() - start) / 1_000_000, snapshot);
+        }
+        memberDataVersion.markChanged();
+    }
+
+    Path snapshotOf(FixtureSpec spec) {
+        return dir.resolve(spec.key() + "-" + schemaHash() + ".sql.zip");
+    }
+
+    private void generate(FixtureSpec spec) {
+        List<Long> teamIds = transactionTemplate.execute(status -> {
+            em.createQuery("delete from Member").executeUpdate();
+            em.createQuery("delete from Team").executeUpdate();
+            memberCountSummary.rebuild();
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < spec.getTeams(); i++) {
+                Team team = new Team("team" + i);
+                em.persist(team);
+                ids.add(team.getId());
+            }
+            return ids;
+        });
+
+        Random random = new Random(spec.getSeed());
+        for (int from = 0; from < spec.getMembers(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, spec.getMembers());
+            int start = from;
+            transactionTemplate.executeWithoutResult(status -> {
+                for (int i = start; i < to; i++) {
+                    Team team = em.getReference(Team.class, teamIds.get(spec.nextTeam(random)));
+                    em.persist(new Member("member" + i, spec.nextAge(random), team));
+                }
+                em.flush();
+                em.clear();
+            });
+        }
+    }
+
+    private void save(Path snapshot) {
+        try {
+            Files.createDirectories(snapshot.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new IllegalStateException("스냅샷 폴더를 만들 수 없음 : " + snapshot, e);
+        }
+        //임시 파일에 쓰고 옮겨서, 중간에 실패해도 깨진 스냅샷이 남지 않게
+        Path tmp = snapshot.resolveSibling(snapshot.getFileName() + ".tmp");
+        jdbcTemplate.execute("SCRIPT TO '" + path(tmp) + "' COMPRESSION ZIP");
+        try {
+            Files.move(tmp, snapshot);
+        } catch (IOException e) {
+            throw new IllegalStateException("스냅샷 저장 실패 : " + snapshot, e);
+        }
+    }
+
+    private void restore(Path snapshot) {
+        //한 커넥션에서 지우고 다시 만들어야 중간 상태를 다른 커넥션이 안봄 (H2 DDL 은 자동 커밋이라 완전히 막지는 못함)
+        jdbcTemplate.execute((Connection connection) -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("DROP ALL OBJECTS");
+                statement.execute("RUNSCRIPT FROM '" + path(snapshot) + "' COMPRESSION ZIP");
+            }
+            return null;
+        });
+    }
+
+    private String schemaHash() {
+        List<String> columns = jdbcTemplate.queryForList(
+                "select table_name || '.' || column_name || ':' || type_name from information_schema.columns"
+                        + " where table_schema = 'PUBLIC' order by table_name, ordinal_position",
+                String.class);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String column : columns) digest.update((column + "\n").getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder();
+            byte[] hash = digest.digest();
+            for (int i = 0; i < 4; i++) hex.append(String.format("%02x", hash[i]));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkH2() {
+        String product = jdbcTemplate.execute((Connection connection) -> connection.getMetaData().getDatabaseProductName());
+        if (!"H2".equals(product)) throw new IllegalStateException("스냅샷 픽스처는 H2 만 지원 : " + product);
+    }
+
+    private static String path(Path file) {
+        return file.toAbsolutePath().toString().replace('\\', '/').replace("'", "''");
+    }
+}
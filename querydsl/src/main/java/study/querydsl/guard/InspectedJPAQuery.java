@@ -0,0 +1,31 @@
+package study.querydsl.guard;
+
+import com.querydsl.core.QueryModifiers;
+import com.querydsl.jpa.impl.JPAQuery;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+/**
+ * fetch, fetchCount, fetchResults, iterate 가 JPA Query 를 만들기 직전에 한 번 검사하는 JPAQuery
+ */
+public class InspectedJPAQuery<T> extends JPAQuery<T> {
+
+    private final QueryInspector inspector;
+    private boolean inspected;
+
+    public InspectedJPAQuery(EntityManager em, QueryInspector inspector) {
+        super(em);
+        this.inspector = inspector;
+    }
+
+    @Override
+    protected Query createQuery(QueryModifiers modifiers, boolean forCount) {
+        //fetchResults 는 count, content 두 번 만드므로 처음 한 번만
+        if (!inspected) {
+            inspector.check(getMetadata());
+            inspected = true;
+        }
+        return super.createQuery(modifiers, forCount);
+    }
+}
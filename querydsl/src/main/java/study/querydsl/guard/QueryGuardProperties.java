@@ -0,0 +1,63 @@
+package study.querydsl.guard;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 쿼리 실행 전 검사, 느린 쿼리 실행 계획 기록 설정 (member.query-guard.*)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "member.query-guard")
+public class QueryGuardProperties {
+
+    public enum Action {OFF, WARN, REJECT}
+
+    /**
+     * 조인 조건 없는 카티션 곱 (from(member, team) 에 연결 조건 누락)
+     */
+    private Action crossJoin = Action.REJECT;
+
+    /**
+     * 인덱스를 못타는 조건만 있는 큰 테이블 (indexMinRows 행 이상)
+     */
+    private Action missingIndex = Action.WARN;
+    private long indexMinRows = 10_000;
+
+    /**
+     * 예상 결과 행 수가 maxRows 를 넘을 때
+     */
+    private Action tooManyRows = Action.WARN;
+    private long maxRows = 1_000_000;
+
+    /**
+     * 테이블 행 수, 인덱스 정보를 다시 읽는 주기 (백그라운드에서, 그 동안은 지난 값)
+     */
+    private Duration statisticsTtl = Duration.ofMinutes(1);
+
+    private final Explain explain = new Explain();
+
+    public Action actionOf(QueryInspection.Kind kind) {
+        switch (kind) {
+            case CROSS_JOIN: return crossJoin;
+            case MISSING_INDEX: return missingIndex;
+            default: return tooManyRows;
+        }
+    }
+
+    /**
+     * threshold 이상 걸린 select 는 같은 커넥션에서 EXPLAIN 을 실행해서 최근 keep 개를 남긴다
+     */
+    @Getter
+    @Setter
+    public static class Explain {
+        private boolean enabled = false;
+        private Duration threshold = Duration.ofMillis(200);
+        private int keep = 50;
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.guard;
+
+import lombok.Getter;
+import lombok.ToString;
+import lombok.Value;
+
+import java.util.List;
+
+/**
+ * 실행 전 검사 결과 (예상 행 수 + 발견된 문제)
+ */
+@Getter
+@ToString
+public class QueryInspection {
+
+    public enum Kind {CROSS_JOIN, MISSING_INDEX, TOO_MANY_ROWS}
+
+    @Value
+    public static class Problem {
+        Kind kind;
+        String message;
+    }
+
+    private final long estimatedRows;
+    private final List<Problem> problems;
+
+    QueryInspection(long estimatedRows, List<Problem> problems) {
+        this.estimatedRows = estimatedRows;
+        this.problems = List.copyOf(problems);
+    }
+
+    public boolean has(Kind kind) {
+        return problems.stream().anyMatch(problem -> problem.getKind() == kind);
+    }
+}
@@ -0,0 +1,299 @@
+package study.querydsl.guard;
+
+import com.querydsl.core.JoinExpression;
+import com.querydsl.core.QueryMetadata;
+import com.querydsl.core.types.CollectionExpression;
+import com.querydsl.core.types.Constant;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Operator;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+import com.querydsl.core.types.PathType;
+import com.querydsl.core.types.SubQueryExpression;
+import com.querydsl.jpa.JPQLSerializer;
+import com.querydsl.jpa.JPQLTemplates;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import study.querydsl.guard.QueryGuardProperties.Action;
+import study.querydsl.guard.QueryInspection.Kind;
+import study.querydsl.guard.QueryInspection.Problem;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * JPAQueryFactory 쿼리를 실행하기 전에 검사 (InspectedJPAQuery 에서 호출)
+ * 1. from, join 의 별칭마다 테이블 통계를 찾고 where / on 조건을 별칭별로 나눈다
+ *    - 별칭 하나만 쓰는 조건 : 그 테이블 필터 (선택도 = 남는 비율)
+ *    - 두 별칭 이상 쓰는 조건, 연관관계 조인 : 별칭끼리 연결
+ * 2. 연결되지 않은 별칭 묶음이 둘 이상이면 조인 조건 없는 카티션 곱 (CROSS_JOIN)
+ * 3. 큰 테이블에 조건이 있는데 인덱스 첫 컬럼을 쓰는 조건이 하나도 없으면 풀스캔 (MISSING_INDEX)
+ * 4. 예상 행 수 = 별칭별 (행 수 x 선택도) 곱 x 조인 선택도, limit 이 있으면 limit 까지 (TOO_MANY_ROWS)
+ * - 문제별로 OFF / WARN (로그) / REJECT (QueryRejectedException) 중 설정대로 처리
+ * - 선택도는 통계가 없으면 어림값 (범위 1/3, like 1/10 ...) 이라 정확한 값이 아니라 자릿수를 보는 용도
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QueryInspector {
+
+    private static final double RANGE_SELECTIVITY = 1.0 / 3;
+    private static final double BETWEEN_SELECTIVITY = 0.25;
+    private static final double LIKE_SELECTIVITY = 0.1;
+    private static final double UNKNOWN_SELECTIVITY = 0.5;
+
+    //인덱스를 탈 수 있는 조건 (첫 번째 인자가 컬럼일 때)
+    private static final Set<Operator> SARGABLE = Set.of(
+            Ops.EQ, Ops.IN, Ops.BETWEEN, Ops.GOE, Ops.GT, Ops.LOE, Ops.LT, Ops.STARTS_WITH);
+
+    private final QueryGuardProperties properties;
+    private final TableStatistics statistics;
+    private final MeterRegistry meterRegistry;
+
+    public void check(QueryMetadata metadata) {
+        if (properties.getCrossJoin() == Action.OFF
+                && properties.getMissingIndex() == Action.OFF
+                && properties.getTooManyRows() == Action.OFF) return;
+
+        QueryInspection inspection = inspect(metadata);
+        for (Problem problem : inspection.getProblems()) {
+            Action action = properties.actionOf(problem.getKind());
+            if (action == Action.OFF) continue;
+            meterRegistry.counter("member.query.guard",
+                    "problem", problem.getKind().name().toLowerCase(Locale.ROOT),
+                    "action", action.name().toLowerCase(Locale.ROOT)).increment();
+            if (action == Action.REJECT) throw new QueryRejectedException(problem, inspection, jpql(metadata));
+            log.warn("query guard {} : {} (예상 {}행) {}", problem.getKind(), problem.getMessage(),
+                    inspection.getEstimatedRows(), jpql(metadata));
+        }
+    }
+
+    public QueryInspection inspect(QueryMetadata metadata) {
+        Map<String, Source> sources = new LinkedHashMap<>();
+        Map<String, String> groups = new HashMap<>();
+        List<Expression<?>> predicates = new ArrayList<>();
+
+        for (JoinExpression join : metadata.getJoins()) {
+            Expression<?> target = join.getTarget();
+            if (target instanceof Operation && ((Operation<?>) target).getOperator() == Ops.ALIAS) {
+                //연관관계 조인 : join(member.team, team), join(team.members, teammate)
+                Operation<?> alias = (Operation<?>) target;
+                Path<?> association = (Path<?>) alias.getArg(0);
+                Path<?> aliasPath = (Path<?>) alias.getArg(1);
+                String parent = rootOf(association);
+                String name = rootOf(aliasPath);
+                sources.put(name, new Source(aliasPath.getType(), parent, association instanceof CollectionExpression));
+                union(groups, name, parent);
+            } else if (target instanceof EntityPath) {
+                //from(member, team), join(team) 같은 연관관계 없는 엔티티
+                String name = rootOf((Path<?>) target);
+                sources.put(name, new Source(target.getType(), null, false));
+                union(groups, name, name);
+            }
+            if (join.getCondition() != null) conjuncts(join.getCondition(), predicates);
+        }
+        if (metadata.getWhere() != null) conjuncts(metadata.getWhere(), predicates);
+
+        Map<String, List<Expression<?>>> filters = new HashMap<>();
+        double joinSelectivity = 1;
+        for (Expression<?> predicate : predicates) {
+            Set<String> roots = new TreeSet<>();
+            collectRoots(predicate, roots);
+            roots.retainAll(sources.keySet());
+            if (roots.size() == 1) {
+                filters.computeIfAbsent(roots.iterator().next(), key -> new ArrayList<>()).add(predicate);
+            } else if (roots.size() > 1) {
+                String first = roots.iterator().next();
+                roots.forEach(root -> union(groups, root, first));
+                joinSelectivity *= joinSelectivity(predicate, roots, sources);
+            }
+        }
+
+        List<Problem> problems = new ArrayList<>();
+        Map<String, List<String>> components = new TreeMap<>();
+        sources.keySet().forEach(name -> components.computeIfAbsent(find(groups, name), key -> new ArrayList<>()).add(name));
+        if (components.size() > 1) {
+            problems.add(new Problem(Kind.CROSS_JOIN, "조인 조건 없이 곱해지는 별칭 " + components.values()));
+        }
+
+        double estimate = joinSelectivity;
+        for (Map.Entry<String, Source> entry : sources.entrySet()) {
+            Source source = entry.getValue();
+            TableStatistics.Table table = statistics.of(source.type);
+            if (table == null) continue;
+            List<Expression<?>> filter = filters.getOrDefault(entry.getKey(), List.of());
+            estimate *= baseRows(source, table, sources) * selectivity(filter, table);
+            if (!filter.isEmpty() && table.getRows() >= properties.getIndexMinRows() && !usesIndex(filter, table)) {
+                problems.add(new Problem(Kind.MISSING_INDEX,
+                        entry.getKey() + " (" + table.getName() + ", " + table.getRows() + "행) 조건이 인덱스를 못탐"));
+            }
+        }
+        Long limit = metadata.getModifiers().getLimit();
+        if (limit != null) estimate = Math.min(estimate, limit);
+        long estimatedRows = Math.round(estimate);
+        if (estimatedRows > properties.getMaxRows()) {
+            problems.add(new Problem(Kind.TOO_MANY_ROWS, "예상 행 수가 " + properties.getMaxRows() + " 초과"));
+        }
+        return new QueryInspection(estimatedRows, problems);
+    }
+
+    /**
+     * 루트 별칭은 테이블 전체, to-one 조인은 1, to-many 조인은 부모 한 행당 평균 자식 수
+     */
+    private double baseRows(Source source, TableStatistics.Table table, Map<String, Source> sources) {
+        if (source.parent == null) return table.getRows();
+        if (!source.toMany) return 1;
+        Source parent = sources.get(source.parent);
+        TableStatistics.Table parentTable = parent == null ? null : statistics.of(parent.type);
+        return parentTable == null ? 1 : (double) table.getRows() / Math.max(1, parentTable.getRows());
+    }
+
+    private double selectivity(List<Expression<?>> filter, TableStatistics.Table table) {
+        double selectivity = 1;
+        for (Expression<?> predicate : filter) selectivity *= selectivity(predicate, table);
+        return selectivity;
+    }
+
+    private double selectivity(Expression<?> predicate, TableStatistics.Table table) {
+        if (!(predicate instanceof Operation)) return UNKNOWN_SELECTIVITY;
+        Operation<?> operation = (Operation<?>) predicate;
+        Operator operator = operation.getOperator();
+        if (operator == Ops.AND) {
+            return selectivity(operation.getArg(0), table) * selectivity(operation.getArg(1), table);
+        }
+        if (operator == Ops.OR) {
+            return 1 - (1 - selectivity(operation.getArg(0), table)) * (1 - selectivity(operation.getArg(1), table));
+        }
+        if (operator == Ops.NOT) return 1 - selectivity(operation.getArg(0), table);
+        if (operator == Ops.EQ || operator == Ops.EQ_IGNORE_CASE) return table.eqSelectivity(columnOf(operation.getArg(0), table));
+        if (operator == Ops.NE) return 1 - table.eqSelectivity(columnOf(operation.getArg(0), table));
+        if (operator == Ops.IN) {
+            Expression<?> values = operation.getArg(1);
+            int size = values instanceof Constant && ((Constant<?>) values).getConstant() instanceof Collection
+                    ? ((Collection<?>) ((Constant<?>) values).getConstant()).size() : 10;
+            return Math.min(1, size * table.eqSelectivity(columnOf(operation.getArg(0), table)));
+        }
+        if (operator == Ops.BETWEEN) return BETWEEN_SELECTIVITY;
+        if (operator == Ops.GOE || operator == Ops.GT || operator == Ops.LOE || operator == Ops.LT) return RANGE_SELECTIVITY;
+        if (operator == Ops.LIKE || operator == Ops.LIKE_IC || operator == Ops.LIKE_ESCAPE
+                || operator == Ops.STARTS_WITH || operator == Ops.STARTS_WITH_IC
+                || operator == Ops.ENDS_WITH || operator == Ops.STRING_CONTAINS) return LIKE_SELECTIVITY;
+        if (operator == Ops.IS_NULL) return LIKE_SELECTIVITY;
+        if (operator == Ops.IS_NOT_NULL) return 1 - LIKE_SELECTIVITY;
+        return UNKNOWN_SELECTIVITY;
+    }
+
+    /**
+     * 두 별칭을 잇는 조건 : a.x = b.y 면 큰 쪽 행 수로 나눔 (키 조인), 그 외는 어림값
+     */
+    private double joinSelectivity(Expression<?> predicate, Set<String> roots, Map<String, Source> sources) {
+        if (!(predicate instanceof Operation) || ((Operation<?>) predicate).getOperator() != Ops.EQ) return RANGE_SELECTIVITY;
+        long rows = 1;
+        for (String root : roots) {
+            TableStatistics.Table table = statistics.of(sources.get(root).type);
+            if (table != null) rows = Math.max(rows, table.getRows());
+        }
+        return 1.0 / rows;
+    }
+
+    /**
+     * AND 로 묶인 조건 중 하나라도 인덱스 첫 컬럼 조건이면 인덱스를 탈 수 있다
+     */
+    private boolean usesIndex(List<Expression<?>> filter, TableStatistics.Table table) {
+        for (Expression<?> predicate : filter) {
+            if (!(predicate instanceof Operation)) continue;
+            Operation<?> operation = (Operation<?>) predicate;
+            if (!SARGABLE.contains(operation.getOperator())) continue;
+            String column = columnOf(operation.getArg(0), table);
+            if (column != null && table.isIndexed(column)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * member.username, member.team.id 같은 경로 -> 컬럼 (함수를 씌웠거나 모르면 null)
+     */
+    private static String columnOf(Expression<?> expression, TableStatistics.Table table) {
+        if (!(expression instanceof Path)) return null;
+        Deque<String> names = new ArrayDeque<>();
+        Path<?> path = (Path<?>) expression;
+        while (path.getMetadata().getParent() != null) {
+            if (path.getMetadata().getPathType() != PathType.PROPERTY) return null;
+            names.addFirst(path.getMetadata().getName());
+            path = path.getMetadata().getParent();
+        }
+        return names.isEmpty() ? null : table.columnOf(String.join(".", names));
+    }
+
+    private static void conjuncts(Expression<?> predicate, List<Expression<?>> result) {
+        if (predicate instanceof Operation && ((Operation<?>) predicate).getOperator() == Ops.AND) {
+            for (Expression<?> arg : ((Operation<?>) predicate).getArgs()) conjuncts(arg, result);
+        } else {
+            result.add(predicate);
+        }
+    }
+
+    /**
+     * 조건에 나오는 별칭 (서브쿼리 안에서 바깥 별칭을 쓰는 것까지)
+     */
+    private static void collectRoots(Expression<?> expression, Set<String> roots) {
+        if (expression instanceof Path) {
+            roots.add(rootOf((Path<?>) expression));
+        } else if (expression instanceof Operation) {
+            for (Expression<?> arg : ((Operation<?>) expression).getArgs()) collectRoots(arg, roots);
+        } else if (expression instanceof SubQueryExpression) {
+            QueryMetadata subQuery = ((SubQueryExpression<?>) expression).getMetadata();
+            if (subQuery.getWhere() != null) collectRoots(subQuery.getWhere(), roots);
+            for (JoinExpression join : subQuery.getJoins()) {
+                if (join.getCondition() != null) collectRoots(join.getCondition(), roots);
+            }
+        }
+    }
+
+    private static String rootOf(Path<?> path) {
+        return path.getRoot().getMetadata().getName();
+    }
+
+    private static void union(Map<String, String> groups, String a, String b) {
+        groups.putIfAbsent(a, a);
+        groups.putIfAbsent(b, b);
+        groups.put(find(groups, a), find(groups, b));
+    }
+
+    private static String find(Map<String, String> groups, String name) {
+        String parent = groups.getOrDefault(name, name);
+        return parent.equals(name) ? name : find(groups, parent);
+    }
+
+    private static String jpql(QueryMetadata metadata) {
+        JPQLSerializer serializer = new JPQLSerializer(JPQLTemplates.DEFAULT);
+        serializer.serialize(metadata, false, null);
+        return serializer.toString();
+    }
+
+    private static class Source {
+        final Class<?> type;
+        final String parent;    //연관관계 조인이면 부모 별칭
+        final boolean toMany;
+
+        Source(Class<?> type, String parent, boolean toMany) {
+            this.type = type;
+            this.parent = parent;
+            this.toMany = toMany;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package study.querydsl.guard;
+
+import lombok.Getter;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+
+/**
+ * 검사에서 REJECT 로 설정된 문제가 나와서 실행하지 않은 쿼리 (쿼리를 잘못 만든 것)
+ */
+@Getter
+public class QueryRejectedException extends InvalidDataAccessApiUsageException {
+
+    private final QueryInspection inspection;
+
+    public QueryRejectedException(QueryInspection.Problem problem, QueryInspection inspection, String jpql) {
+        super(problem.getKind() + " : " + problem.getMessage() + " (예상 " + inspection.getEstimatedRows() + "행) " + jpql);
+        this.inspection = inspection;
+    }
+}
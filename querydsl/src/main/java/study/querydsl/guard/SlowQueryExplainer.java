@@ -0,0 +1,103 @@
+package study.querydsl.guard;
+
+import com.p6spy.engine.common.PreparedStatementInformation;
+import com.p6spy.engine.common.StatementInformation;
+import com.p6spy.engine.event.JdbcEventListener;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 느린 select 의 실행 계획 기록 (member.query-guard.explain.enabled=true 일 때)
+ * - p6spy 가 쿼리 실행 후 걸린 시간과 값이 채워진 SQL 을 넘겨준다 (JdbcEventListener 빈은 p6spy 에 자동 등록)
+ * - threshold 이상이면 같은 커넥션에서 EXPLAIN {sql} 을 실행 (같은 세션, 같은 트랜잭션 상태에서 본 계획)
+ * - 호출 지점 = 스택에서 처음 나오는 study.querydsl.repository 프레임
+ * - 최근 keep 개만 남기고 로그로도 남긴다
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SlowQueryExplainer extends JdbcEventListener {
+
+    private static final String REPOSITORY_PACKAGE = "study.querydsl.repository.";
+
+    private final QueryGuardProperties properties;
+    private final Deque<ExplainedQuery> recent = new ConcurrentLinkedDeque<>();
+
+    @Value
+    public static class ExplainedQuery {
+        Instant at;
+        String callSite;
+        long elapsedMillis;
+        String sql;
+        String plan;
+    }
+
+    /**
+     * 최근 기록부터
+     */
+    public List<ExplainedQuery> recent() {
+        return new ArrayList<>(recent);
+    }
+
+    @Override
+    public void onAfterExecuteQuery(PreparedStatementInformation statementInformation, long timeElapsedNanos, SQLException e) {
+        explain(statementInformation, statementInformation.getSqlWithValues(), timeElapsedNanos, e);
+    }
+
+    @Override
+    public void onAfterExecuteQuery(StatementInformation statementInformation, long timeElapsedNanos, String sql, SQLException e) {
+        explain(statementInformation, sql, timeElapsedNanos, e);
+    }
+
+    private void explain(StatementInformation statementInformation, String sql, long elapsedNanos, SQLException e) {
+        QueryGuardProperties.Explain explain = properties.getExplain();
+        if (!explain.isEnabled() || e != null || sql == null) return;
+        if (elapsedNanos < explain.getThreshold().toNanos()) return;
+        if (!sql.trim().toLowerCase(Locale.ROOT).startsWith("select")) return;
+
+        String plan;
+        try (Statement statement = statementInformation.getConnectionInformation().getConnection().createStatement();
+             ResultSet rs = statement.executeQuery("EXPLAIN " + sql)) {
+            StringBuilder lines = new StringBuilder();
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    if (i > 1) lines.append(' ');
+                    lines.append(rs.getString(i));
+                }
+                lines.append('\n');
+            }
+            plan = lines.toString().trim();
+        } catch (SQLException explainFailed) {
+            log.debug("explain failed : {}", sql, explainFailed);
+            return;
+        }
+
+        ExplainedQuery explained = new ExplainedQuery(Instant.now(), callSite(),
+                TimeUnit.NANOSECONDS.toMillis(elapsedNanos), sql, plan);
+        recent.addFirst(explained);
+        while (recent.size() > explain.getKeep()) recent.pollLast();
+        log.warn("slow query {}ms at {} : {}\nplan : {}", explained.getElapsedMillis(), explained.getCallSite(), sql, plan);
+    }
+
+    private static String callSite() {
+        return StackWalker.getInstance().walk(frames -> frames
+                .filter(frame -> frame.getClassName().startsWith(REPOSITORY_PACKAGE))
+                .findFirst()
+                .map(frame -> frame.getClassName().substring(REPOSITORY_PACKAGE.length()) + "." + frame.getMethodName())
+                .orElse("other"));
+    }
+}
@@ -0,0 +1,216 @@
+package study.querydsl.guard;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 엔티티 테이블 통계 (쿼리 검사용, statisticsTtl 동안 캐시)
+ * - 행 수 : count(*)
+ * - 인덱스 : JDBC 메타데이터에서 인덱스 첫 번째 컬럼만 (그 컬럼 조건이어야 인덱스를 탈 수 있음)
+ * - 값 종류 수 : H2 는 information_schema.columns.selectivity (ANALYZE 결과) 로 계산, 나머지 DB 는 모름
+ * - 요청 스레드에서는 읽지 않는다 : 백그라운드 스레드 하나가 테이블마다 하나씩만 다시 읽고
+ *   그 동안은 지난 통계를, 처음 읽기 전에는 null (예상 행 수 없이 검사)
+ */
+@Slf4j
+@Component
+public class TableStatistics {
+
+    private final SessionFactoryImplementor sessionFactory;
+    private final JdbcTemplate jdbcTemplate;
+    private final QueryGuardProperties properties;
+    private final Map<Class<?>, Table> tables = new ConcurrentHashMap<>();
+    private final Set<Class<?>> loading = ConcurrentHashMap.newKeySet();
+    private final ExecutorService loader;
+
+    public TableStatistics(EntityManagerFactory emf, DataSource dataSource, QueryGuardProperties properties) {
+        this.sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.properties = properties;
+        this.loader = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "table-statistics");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 첫 검색 전에 미리 읽어둔다
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            Class<?> type = persister.getMappedClass();
+            if (type != null && persister instanceof AbstractEntityPersister) loadInBackground(type, (AbstractEntityPersister) persister);
+        }
+    }
+
+    @PreDestroy
+    public void close() {
+        loader.shutdownNow();
+    }
+
+    /**
+     * 엔티티가 아니거나 아직 한번도 못 읽었으면 null, ttl 이 지났으면 지난 값을 주고 백그라운드에서 다시 읽는다
+     */
+    public Table of(Class<?> entityType) {
+        Table table = tables.get(entityType);
+        long ttl = properties.getStatisticsTtl().toNanos();
+        if (table == null || System.nanoTime() - table.loadedAt > ttl) {
+            AbstractEntityPersister persister = persisterOf(entityType);
+            if (persister == null) return null;
+            loadInBackground(entityType, persister);
+        }
+        return table;
+    }
+
+    /**
+     * 지금 스레드에서 모든 엔티티 통계를 다시 읽기 (데이터를 대량으로 바꾼 뒤, 테스트)
+     * - 트랜잭션 안이면 같은 커넥션이라 flush 한 (아직 커밋 안된) 행까지 센다
+     */
+    public void refresh() {
+        for (EntityPersister persister : sessionFactory.getMetamodel().entityPersisters().values()) {
+            Class<?> type = persister.getMappedClass();
+            if (type == null || !(persister instanceof AbstractEntityPersister)) continue;
+            put(type, load((AbstractEntityPersister) persister));
+        }
+    }
+
+    /**
+     * 같은 테이블은 한번에 하나만 읽는다 (동시에 만료를 본 요청들이 같이 count(*) 하지 않도록)
+     */
+    private void loadInBackground(Class<?> entityType, AbstractEntityPersister persister) {
+        if (!loading.add(entityType)) return;
+        try {
+            loader.execute(() -> {
+                try {
+                    put(entityType, load(persister));
+                } catch (RuntimeException e) {
+                    log.warn("table statistics load failed : {}", persister.getTableName(), e);    //지난 값을 계속 쓰고 다음에 다시
+                } finally {
+                    loading.remove(entityType);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            loading.remove(entityType);     //종료 중
+        }
+    }
+
+    /**
+     * 늦게 끝났어도 먼저 시작한 읽기가 나중 결과를 덮어쓰지 않도록
+     */
+    private void put(Class<?> entityType, Table table) {
+        tables.merge(entityType, table, (old, loaded) -> loaded.loadedAt - old.loadedAt >= 0 ? loaded : old);
+    }
+
+    private AbstractEntityPersister persisterOf(Class<?> entityType) {
+        EntityPersister persister;
+        try {
+            persister = sessionFactory.getMetamodel().entityPersister(entityType);
+        } catch (RuntimeException e) {
+            return null;
+        }
+        return persister instanceof AbstractEntityPersister ? (AbstractEntityPersister) persister : null;
+    }
+
+    private Table load(AbstractEntityPersister entityPersister) {
+        String tableName = entityPersister.getTableName();
+        long startedAt = System.nanoTime();
+
+        long rows = jdbcTemplate.queryForObject("select count(*) from " + tableName, Long.class);
+        Set<String> indexed = new HashSet<>();
+        Map<String, Long> distinct = new HashMap<>();
+        String product = jdbcTemplate.execute((Connection connection) -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? tableName.toUpperCase(Locale.ROOT) : tableName;
+            try (ResultSet rs = metaData.getIndexInfo(null, null, name, false, true)) {
+                while (rs.next()) {
+                    if (rs.getShort("ORDINAL_POSITION") == 1 && rs.getString("COLUMN_NAME") != null) {
+                        indexed.add(rs.getString("COLUMN_NAME").toLowerCase(Locale.ROOT));
+                    }
+                }
+            }
+            return metaData.getDatabaseProductName();
+        });
+        if ("H2".equals(product)) {
+            jdbcTemplate.query("select column_name, selectivity from information_schema.columns where table_name = ?",
+                    rs -> {
+                        long values = Math.max(1, rows * rs.getInt("selectivity") / 100);
+                        distinct.put(rs.getString("column_name").toLowerCase(Locale.ROOT), values);
+                    }, tableName.toUpperCase(Locale.ROOT));
+        }
+        return new Table(tableName, rows, indexed, distinct, entityPersister, startedAt);
+    }
+
+    @Getter
+    public static class Table {
+
+        //값 종류 수를 모를 때 = 조건 하나가 10% 를 남긴다고 봄
+        private static final double DEFAULT_EQ_SELECTIVITY = 0.1;
+
+        private final String name;
+        private final long rows;
+        private final Set<String> indexedColumns;
+        private final Map<String, Long> distinctValues;
+        private final AbstractEntityPersister persister;
+        private final long loadedAt;
+
+        Table(String name, long rows, Set<String> indexedColumns, Map<String, Long> distinctValues,
+              AbstractEntityPersister persister, long loadedAt) {
+            this.name = name;
+            this.rows = rows;
+            this.indexedColumns = indexedColumns;
+            this.distinctValues = distinctValues;
+            this.persister = persister;
+            this.loadedAt = loadedAt;
+        }
+
+        /**
+         * 속성 경로 (username, team.id) -> 컬럼 이름, 모르면 null
+         */
+        public String columnOf(String property) {
+            try {
+                String[] columns = property.equals(persister.getIdentifierPropertyName())
+                        ? persister.getIdentifierColumnNames()
+                        : persister.getPropertyColumnNames(property);
+                return columns.length == 1 ? columns[0].toLowerCase(Locale.ROOT) : null;
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+
+        public boolean isIndexed(String column) {
+            return indexedColumns.contains(column);
+        }
+
+        /**
+         * column = 값 조건이 남기는 비율
+         */
+        public double eqSelectivity(String column) {
+            Long values = column == null ? null : distinctValues.get(column);
+            return values == null ? DEFAULT_EQ_SELECTIVITY : 1.0 / values;
+        }
+    }
+}
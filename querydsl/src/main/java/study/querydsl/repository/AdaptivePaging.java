@@ -0,0 +1,333 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.core.types.dsl.NumberTemplate;
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.stereotype.Component;
+import study.querydsl.change.MemberDataVersion;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.summary.MemberCountSummary;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.shapeOf;
+import static study.querydsl.repository.MemberSearchPredicates.where;
+
+/**
+ * 페이지 조회 방식을 조건 조합(shape) 별로 실제 걸린 시간을 보고 고른다 (searchPageAdaptive)
+ * - COMBINED : content 쿼리 하나에 count(*) over() 를 같이 (왕복 한번, 대신 DB 가 조건에 맞는 행을 다 센다)
+ * - SPLIT : content 쿼리 후 필요할 때만 count 쿼리 (첫 페이지가 덜 찼거나 마지막 페이지면 생략)
+ * - SKIP_COUNT : count 쿼리 없이 회원 수 요약 테이블에서 (username 조건이 없을 때만)
+ * - CACHED_COUNT : 같은 조건의 total 을 데이터 버전이 바뀌기 전까지 재사용 (있으면 항상 이걸로)
+ * 방식마다 드는 시간은 지수 이동 평균으로 기록, 처음엔 안 써본 방식부터 MIN_SAMPLES 번씩 써보고
+ * 그 다음부터는 가장 싼 방식으로, EXPLORE_EVERY 번에 한번은 다른 방식도 다시 재본다 (데이터 분포가 바뀌는 것 반영)
+ * 지표 : member.paging.query (shape, part 별 시간), member.paging.strategy (shape 별로 고른 방식 횟수)
+ */
+@Component
+public class AdaptivePaging {
+
+    public enum Strategy {COMBINED, SPLIT, SKIP_COUNT, CACHED_COUNT}
+
+    static final int MIN_SAMPLES = 3;
+    static final int EXPLORE_EVERY = 20;
+    private static final double ALPHA = 0.2;
+    private static final int CACHED_TOTALS = 1_024;
+
+    private static final NumberTemplate<Long> COUNT_OVER =
+            Expressions.numberTemplate(Long.class, MemberSqlFunctions.COUNT_OVER + "()");
+
+    private final JPAQueryFactory queryFactory;
+    private final MemberCountSummary memberCountSummary;
+    private final MemberDataVersion memberDataVersion;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Integer, ShapeStats> shapes = new ConcurrentHashMap<>();
+    private final Map<TotalKey, CachedTotal> totals = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<TotalKey, CachedTotal> eldest) {
+            return size() > CACHED_TOTALS;
+        }
+    };
+
+    public AdaptivePaging(JPAQueryFactory queryFactory, MemberCountSummary memberCountSummary,
+                          MemberDataVersion memberDataVersion, MeterRegistry meterRegistry) {
+        this.queryFactory = queryFactory;
+        this.memberCountSummary = memberCountSummary;
+        this.memberDataVersion = memberDataVersion;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public Page<MemberTeamDto> page(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort) {
+        return page(condition, pageable, sort, null);
+    }
+
+    /**
+     * forced 가 있으면 고르지 않고 그 방식으로 (테스트, 벤치마크)
+     */
+    Page<MemberTeamDto> page(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort,
+                             Strategy forced) {
+        int shape = shapeOf(condition);
+        ShapeStats stats = shapes.computeIfAbsent(shape, ShapeStats::new);
+        long version = memberDataVersion.current();    //조회 전에 읽어야 조회 중 변경이 있으면 다음에 다시 센다
+        TotalKey key = TotalKey.of(condition);
+
+        Strategy strategy = forced;
+        if (strategy == null) {
+            CachedTotal cached = cachedTotal(key);
+            strategy = cached != null && cached.version == version ? Strategy.CACHED_COUNT : stats.choose(eligible(condition));
+        }
+        stats.decided(strategy);
+
+        switch (strategy) {
+            case COMBINED:
+                return combined(condition, pageable, sort, stats, key, version);
+            case SKIP_COUNT:
+                return summarized(condition, pageable, sort, stats);
+            case CACHED_COUNT:
+                CachedTotal cached = cachedTotal(key);
+                if (cached != null && cached.version == version) {
+                    List<MemberTeamDto> content = stats.time(Part.CONTENT, () -> content(condition, pageable, sort));
+                    return new PageImpl<>(content, pageable, cached.total);
+                }
+                return split(condition, pageable, sort, stats, key, version);   //강제로 골랐는데 캐시가 없음
+            default:
+                return split(condition, pageable, sort, stats, key, version);
+        }
+    }
+
+    /**
+     * shape 별로 지금 고르는 방식 (CACHED_COUNT 는 캐시가 있을 때만 쓰므로 제외)
+     */
+    public Map<Integer, Strategy> decisions() {
+        Map<Integer, Strategy> decisions = new LinkedHashMap<>();
+        shapes.forEach((shape, stats) -> decisions.put(shape, stats.best(eligible(shape))));
+        return decisions;
+    }
+
+    private List<Strategy> eligible(MemberSearchCondition condition) {
+        return eligible(shapeOf(condition));
+    }
+
+    private static List<Strategy> eligible(int shape) {
+        List<Strategy> eligible = new ArrayList<>(List.of(Strategy.COMBINED, Strategy.SPLIT));
+        if ((shape & MemberSearchPredicates.HAS_USERNAME) == 0) eligible.add(Strategy.SKIP_COUNT);
+        return eligible;
+    }
+
+    private Page<MemberTeamDto> combined(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort,
+                                         ShapeStats stats, TotalKey key, long version) {
+        List<Tuple> rows = stats.time(Part.COMBINED, () -> where(queryFactory
+                .select(MEMBER_TEAM_DTO, COUNT_OVER)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .orderBy(sort.getOrders())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch());
+
+        List<MemberTeamDto> content = new ArrayList<>(rows.size());
+        rows.forEach(row -> content.add(row.get(MEMBER_TEAM_DTO)));
+        long total;
+        if (!rows.isEmpty()) {
+            total = rows.get(0).get(COUNT_OVER);
+        } else if (pageable.getOffset() == 0) {
+            total = 0;
+        } else {
+            total = stats.time(Part.COUNT, () -> countQuery(condition).fetchCount());    //마지막 페이지 너머 -> 행이 없어서 모름
+        }
+        cache(key, version, total);
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    private Page<MemberTeamDto> split(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort,
+                                      ShapeStats stats, TotalKey key, long version) {
+        List<MemberTeamDto> content = stats.time(Part.CONTENT, () -> content(condition, pageable, sort));
+        boolean[] counted = {false};
+        Page<MemberTeamDto> page = PageableExecutionUtils.getPage(content, pageable, () -> {
+            counted[0] = true;
+            return stats.time(Part.COUNT, () -> countQuery(condition).fetchCount());
+        });
+        stats.counted(counted[0]);
+        if (counted[0]) cache(key, version, page.getTotalElements());
+        return page;
+    }
+
+    private Page<MemberTeamDto> summarized(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort,
+                                           ShapeStats stats) {
+        List<MemberTeamDto> content = stats.time(Part.CONTENT, () -> content(condition, pageable, sort));
+        OptionalLong total = stats.time(Part.SUMMARY, () -> memberCountSummary.count(condition));
+        return new PageImpl<>(content, pageable, total.isPresent() ? total.getAsLong() : countQuery(condition).fetchCount());
+    }
+
+    private List<MemberTeamDto> content(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort) {
+        return where(queryFactory
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .orderBy(sort.getOrders())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+    }
+
+    private JPAQuery<Member> countQuery(MemberSearchCondition condition) {
+        return where(queryFactory
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team), condition);
+    }
+
+    private CachedTotal cachedTotal(TotalKey key) {
+        synchronized (totals) {
+            return totals.get(key);
+        }
+    }
+
+    private void cache(TotalKey key, long version, long total) {
+        synchronized (totals) {
+            totals.put(key, new CachedTotal(version, total));
+        }
+    }
+
+    enum Part {CONTENT, COUNT, COMBINED, SUMMARY}
+
+    /**
+     * shape 하나의 부분별 평균 시간, 방식별 사용 횟수
+     */
+    private class ShapeStats {
+
+        private final String tag;
+        private final Map<Part, Double> averageNanos = new EnumMap<>(Part.class);
+        private final Map<Part, Timer> timers = new EnumMap<>(Part.class);
+        private final Map<Strategy, Counter> decisions = new EnumMap<>(Strategy.class);
+        private final Map<Strategy, Integer> samples = new EnumMap<>(Strategy.class);
+        private double countRate = 1.0;    //SPLIT 에서 count 쿼리까지 간 비율
+        private long calls;
+
+        ShapeStats(int shape) {
+            this.tag = Integer.toBinaryString(shape);
+            for (Part part : Part.values()) {
+                timers.put(part, Timer.builder("member.paging.query")
+                        .tag("shape", tag)
+                        .tag("part", part.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+            for (Strategy strategy : Strategy.values()) {
+                decisions.put(strategy, Counter.builder("member.paging.strategy")
+                        .tag("shape", tag)
+                        .tag("strategy", strategy.name().toLowerCase())
+                        .register(meterRegistry));
+            }
+        }
+
+        synchronized Strategy choose(List<Strategy> eligible) {
+            calls++;
+            for (Strategy strategy : eligible) {
+                if (samples.getOrDefault(strategy, 0) < MIN_SAMPLES) return strategy;
+            }
+            Strategy best = best(eligible);
+            if (calls % EXPLORE_EVERY != 0) return best;
+            List<Strategy> others = new ArrayList<>(eligible);
+            others.remove(best);
+            return others.get((int) (calls / EXPLORE_EVERY % others.size()));
+        }
+
+        /**
+         * 방식별 예상 시간 (content 쿼리 시간은 COMBINED 외에는 같이 든다)
+         */
+        synchronized Strategy best(List<Strategy> eligible) {
+            Strategy best = Strategy.SPLIT;
+            double bestCost = Double.MAX_VALUE;
+            for (Strategy strategy : eligible) {
+                double cost = cost(strategy);
+                if (cost < bestCost) {
+                    best = strategy;
+                    bestCost = cost;
+                }
+            }
+            return best;
+        }
+
+        private double cost(Strategy strategy) {
+            switch (strategy) {
+                case COMBINED: return average(Part.COMBINED);
+                case SKIP_COUNT: return average(Part.CONTENT) + average(Part.SUMMARY);
+                default: return average(Part.CONTENT) + countRate * average(Part.COUNT);
+            }
+        }
+
+        private double average(Part part) {
+            return averageNanos.getOrDefault(part, 0.0);
+        }
+
+        synchronized void decided(Strategy strategy) {
+            samples.merge(strategy, 1, Integer::sum);
+            decisions.get(strategy).increment();
+        }
+
+        synchronized void counted(boolean counted) {
+            countRate += ALPHA * ((counted ? 1.0 : 0.0) - countRate);
+        }
+
+        <T> T time(Part part, Supplier<T> query) {
+            long start = System.nanoTime();
+            try {
+                return query.get();
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                timers.get(part).record(elapsed, TimeUnit.NANOSECONDS);
+                synchronized (this) {
+                    averageNanos.merge(part, (double) elapsed, (average, sample) -> average + ALPHA * (sample - average));
+                }
+            }
+        }
+    }
+
+    @Value
+    static class TotalKey {
+        String username;
+        boolean ignoreCase;
+        String teamName;
+        Integer ageGoe;
+        Integer ageLoe;
+
+        static TotalKey of(MemberSearchCondition condition) {
+            return new TotalKey(
+                    hasText(condition.getUsername()) ? condition.getUsername() : null,
+                    condition.isIgnoreCase(),
+                    hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                    condition.getAgeGoe(),
+                    condition.getAgeLoe());
+        }
+    }
+
+    @Value
+    static class CachedTotal {
+        long version;
+        long total;
+    }
+}
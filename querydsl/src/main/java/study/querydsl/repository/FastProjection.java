@@ -0,0 +1,39 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * FastProjections 가 만든 프로젝션 (Projections.bean/fields/constructor 와 같은 자리에 사용)
+ * - 행 -> DTO 변환 함수는 DTO 클래스, 방식, 바인딩 이름이 같으면 공유된다
+ */
+public class FastProjection<T> extends FactoryExpressionBase<T> {
+
+    private final List<Expression<?>> args;
+    private final Function<Object[], T> mapper;
+
+    FastProjection(Class<? extends T> type, List<Expression<?>> args, Function<Object[], T> mapper) {
+        super(type);
+        this.args = args;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return args;
+    }
+
+    @Override
+    public T newInstance(Object... values) {
+        return mapper.apply(values);
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
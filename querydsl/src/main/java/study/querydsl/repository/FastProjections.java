@@ -0,0 +1,238 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Operation;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.Path;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Projections.bean / fields / constructor 를 그대로 바꿔 쓸 수 있는 프로젝션
+ * - Projections 는 행마다 리플렉션(Method.invoke, Field.set, Constructor.newInstance)으로 DTO 를 만든다
+ * - 여기서는 처음 한번만 setter, 필드, 생성자를 찾아서
+ *   bean : LambdaMetafactory 로 만든 BiConsumer (setter 직접 호출과 같은 비용)
+ *   fields : MethodHandle 필드 setter
+ *   constructor : MethodHandle 생성자
+ *   로 만들어 두고 (DTO, 방식, 바인딩) 별로 캐시
+ *
+ * ex) queryFactory.select(FastProjections.bean(MemberDto.class, member.username, member.age))
+ */
+public final class FastProjections {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+    private static final Map<String, Function<Object[], ?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private FastProjections() {
+    }
+
+    /**
+     * setter 로 주입 (바인딩 이름 = 경로 이름 또는 as() 별칭)
+     */
+    public static <T> FastProjection<T> bean(Class<? extends T> type, Expression<?>... exprs) {
+        List<String> names = bindingNames(exprs);
+        return new FastProjection<>(type, List.of(exprs),
+                mapper(type, "bean" + names, () -> beanMapper(type, names)));
+    }
+
+    /**
+     * 필드에 바로 주입 (private 필드도 가능)
+     */
+    public static <T> FastProjection<T> fields(Class<? extends T> type, Expression<?>... exprs) {
+        List<String> names = bindingNames(exprs);
+        return new FastProjection<>(type, List.of(exprs),
+                mapper(type, "fields" + names, () -> fieldsMapper(type, names)));
+    }
+
+    /**
+     * 타입이 맞는 생성자로 생성 (순서대로)
+     */
+    public static <T> FastProjection<T> constructor(Class<? extends T> type, Expression<?>... exprs) {
+        List<Class<?>> types = Arrays.stream(exprs).map(Expression::getType).collect(Collectors.toList());
+        return new FastProjection<>(type, List.of(exprs),
+                mapper(type, "constructor" + types, () -> constructorMapper(type, types)));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> Function<Object[], T> mapper(Class<? extends T> type, String binding,
+                                                   Supplier<Function<Object[], ?>> factory) {
+        return (Function<Object[], T>) MAPPERS.computeIfAbsent(type.getName() + ":" + binding, key -> factory.get());
+    }
+
+    private static Function<Object[], ?> beanMapper(Class<?> type, List<String> names) {
+        Supplier<Object> constructor = noArgConstructor(type);
+        List<BiConsumer<Object, Object>> setters = new ArrayList<>();
+        List<Boolean> primitives = new ArrayList<>();
+        for (String name : names) {
+            Class<?> propertyType = findField(type, name).getType();
+            setters.add(setter(type, name, propertyType));
+            primitives.add(propertyType.isPrimitive());
+        }
+        return populate(constructor, setters, primitives);
+    }
+
+    private static Function<Object[], ?> fieldsMapper(Class<?> type, List<String> names) {
+        Supplier<Object> constructor = noArgConstructor(type);
+        List<BiConsumer<Object, Object>> setters = new ArrayList<>();
+        List<Boolean> primitives = new ArrayList<>();
+        for (String name : names) {
+            Field field = findField(type, name);
+            try {
+                MethodHandle handle = MethodHandles.privateLookupIn(field.getDeclaringClass(), LOOKUP)
+                        .unreflectSetter(field)
+                        .asType(MethodType.methodType(void.class, Object.class, Object.class));
+                setters.add(invoker(handle));
+                primitives.add(field.getType().isPrimitive());
+            } catch (IllegalAccessException e) {
+                throw new IllegalArgumentException(type.getSimpleName() + "." + name + " 필드에 접근할 수 없음", e);
+            }
+        }
+        return populate(constructor, setters, primitives);
+    }
+
+    private static Function<Object[], ?> constructorMapper(Class<?> type, List<Class<?>> argTypes) {
+        Constructor<?> constructor = Arrays.stream(type.getConstructors())
+                .filter(c -> matches(c.getParameterTypes(), argTypes))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException(type.getSimpleName() + " 에 " + argTypes + " 생성자가 없음"));
+        try {
+            MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+                    .asSpreader(Object[].class, argTypes.size())
+                    .asType(MethodType.methodType(Object.class, Object[].class));
+            return values -> {
+                try {
+                    return (Object) handle.invokeExact(values);
+                } catch (RuntimeException | Error e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new IllegalStateException(type.getName() + " 생성 실패", e);
+                }
+            };
+        } catch (IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " 생성자에 접근할 수 없음", e);
+        }
+    }
+
+    /**
+     * 기본 생성자 -> setter 순서대로 호출 (null 이면 primitive 필드는 기본값 유지)
+     */
+    private static Function<Object[], ?> populate(Supplier<Object> constructor,
+                                                  List<BiConsumer<Object, Object>> setterList,
+                                                  List<Boolean> primitiveList) {
+        @SuppressWarnings("unchecked")
+        BiConsumer<Object, Object>[] setters = setterList.toArray(new BiConsumer[0]);
+        boolean[] primitives = new boolean[primitiveList.size()];
+        for (int i = 0; i < primitives.length; i++) primitives[i] = primitiveList.get(i);
+
+        return values -> {
+            Object dto = constructor.get();
+            for (int i = 0; i < setters.length; i++) {
+                if (values[i] == null && primitives[i]) continue;
+                setters[i].accept(dto, values[i]);
+            }
+            return dto;
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Supplier<Object> noArgConstructor(Class<?> type) {
+        try {
+            MethodHandle constructor = LOOKUP.findConstructor(type, MethodType.methodType(void.class));
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    constructor,
+                    MethodType.methodType(type));
+            return (Supplier<Object>) site.getTarget().invokeExact();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + " 은 public 기본 생성자가 필요함", e);
+        } catch (Throwable e) {
+            throw new IllegalStateException(type.getSimpleName() + " 생성자 바인딩 실패", e);
+        }
+    }
+
+    /**
+     * public setter 는 LambdaMetafactory 로 (일반 메서드 호출처럼 JIT 인라인 가능)
+     */
+    @SuppressWarnings("unchecked")
+    private static BiConsumer<Object, Object> setter(Class<?> type, String name, Class<?> propertyType) {
+        String setterName = "set" + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        try {
+            MethodHandle setter = LOOKUP.findVirtual(type, setterName, MethodType.methodType(void.class, propertyType));
+            CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept",
+                    MethodType.methodType(BiConsumer.class),
+                    MethodType.methodType(void.class, Object.class, Object.class),
+                    setter,
+                    MethodType.methodType(void.class, type, MethodType.methodType(propertyType).wrap().returnType()));
+            return (BiConsumer<Object, Object>) site.getTarget().invokeExact();
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException(type.getSimpleName() + "." + setterName + " 이 없음", e);
+        } catch (Throwable e) {
+            throw new IllegalStateException(type.getSimpleName() + "." + setterName + " 바인딩 실패", e);
+        }
+    }
+
+    private static BiConsumer<Object, Object> invoker(MethodHandle handle) {
+        return (dto, value) -> {
+            try {
+                handle.invokeExact(dto, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new IllegalStateException(e);
+            }
+        };
+    }
+
+    private static Field findField(Class<?> type, String name) {
+        for (Class<?> c = type; c != null && c != Object.class; c = c.getSuperclass()) {
+            try {
+                return c.getDeclaredField(name);
+            } catch (NoSuchFieldException ignored) {
+            }
+        }
+        throw new IllegalArgumentException(type.getSimpleName() + " 에 " + name + " 필드가 없음");
+    }
+
+    private static boolean matches(Class<?>[] parameterTypes, List<Class<?>> argTypes) {
+        if (parameterTypes.length != argTypes.size()) return false;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            Class<?> parameter = MethodType.methodType(parameterTypes[i]).wrap().returnType();
+            Class<?> arg = MethodType.methodType(argTypes.get(i)).wrap().returnType();
+            if (!parameter.isAssignableFrom(arg)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Projections.bean/fields 와 같은 규칙 : 경로면 경로 이름, as("별칭") 이면 별칭
+     */
+    private static List<String> bindingNames(Expression<?>... exprs) {
+        List<String> names = new ArrayList<>();
+        for (Expression<?> expr : exprs) {
+            if (expr instanceof Path) {
+                names.add(((Path<?>) expr).getMetadata().getName());
+            } else if (expr instanceof Operation && ((Operation<?>) expr).getOperator() == Ops.ALIAS) {
+                names.add(((Path<?>) ((Operation<?>) expr).getArg(1)).getMetadata().getName());
+            } else {
+                throw new IllegalArgumentException(expr + " 는 경로나 as() 별칭이 필요함");
+            }
+        }
+        return names;
+    }
+}
@@ -0,0 +1,11 @@
+package study.querydsl.repository;
+
+/**
+ * 허용하지 않은 정렬 필드, 또는 인덱스 없는 정렬로 너무 깊은 페이지 요청 (400)
+ */
+public class InvalidSortException extends IllegalArgumentException {
+
+    public InvalidSortException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,63 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Member 엔티티 조회할 때 같이 가져올 연관관계 (MemberRepository.findMembers)
+ * - 쓰는 쪽이 필요한 만큼만 골라서 N+1 (덜 가져옴), 안쓰는 조인 (더 가져옴) 을 피한다
+ * - 팀 이름 조건은 where 로 건다 (페치 조인에는 on 조건을 못 붙임 -> 걸러진 컬렉션이 영속성 컨텍스트에 올라가면 안되므로)
+ */
+public enum MemberFetchPlan {
+
+    /**
+     * Member 만 (team 은 프록시, 팀 이름 조건이 있을 때만 조인)
+     */
+    DEFAULT(false, false),
+
+    /**
+     * Member + team 페치 조인 (to-one 이라 행 수 그대로)
+     */
+    WITH_TEAM(true, false),
+
+    /**
+     * Member + team + team.members 페치 조인
+     * - 행 수가 (회원 수 x 팀원 수) 로 늘어나므로 팀 이름 조건이 있을 때만 (팀 하나 -> 팀원 수의 제곱까지)
+     * - 팀 이름 조건이 없으면 IllegalArgumentException
+     */
+    WITH_TEAM_AND_TEAMMATES(true, true);
+
+    private static final QMember teammate = new QMember("teammate");
+
+    private final boolean fetchTeam;
+    private final boolean fetchTeammates;
+
+    MemberFetchPlan(boolean fetchTeam, boolean fetchTeammates) {
+        this.fetchTeam = fetchTeam;
+        this.fetchTeammates = fetchTeammates;
+    }
+
+    /**
+     * select member from Member member + 계획에 맞는 조인 (where 절 alias 는 member, team)
+     */
+    JPAQuery<Member> selectFrom(JPAQueryFactory queryFactory, boolean filterByTeam) {
+        if (fetchTeammates && !filterByTeam) {
+            throw new IllegalArgumentException(name() + " 는 팀 이름 조건이 있어야 함 (팀원까지 페치 조인하면 행 수가 회원 수 x 팀원 수)");
+        }
+        JPAQuery<Member> query = queryFactory.selectFrom(member);
+        if (fetchTeam) {
+            query.leftJoin(member.team, team).fetchJoin();
+        } else if (filterByTeam) {
+            query.leftJoin(member.team, team);
+        }
+        if (fetchTeammates) {
+            query.leftJoin(team.members, teammate).fetchJoin().distinct();
+        }
+        return query;
+    }
+}
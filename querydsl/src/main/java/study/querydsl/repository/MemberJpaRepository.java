@@ -2,14 +2,13 @@ package study.querydsl.repository;
 
 import com.querydsl.core.BooleanBuilder;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.StringUtils;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
@@ -21,6 +20,8 @@ import java.util.Optional;
 import static org.springframework.util.StringUtils.*;
 import static study.querydsl.entity.QMember.*;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.where;
 
 @Repository
 @RequiredArgsConstructor
@@ -28,6 +29,7 @@ public class MemberJpaRepository {
 
     private final EntityManager em;
     private final JPAQueryFactory queryFactory;
+    private final MemberProjectionPlanner projectionPlanner;
 
     public void save(Member member) {
         em.persist(member);
@@ -62,6 +64,32 @@ public class MemberJpaRepository {
                 .fetch();
     }
 
+    /**
+     * DTO 필드에 해당하는 컬럼만 조회 (엔티티로 만들지 않음)
+     * ex) findAll_Projection(MemberDto.class) -> select m.username, m.age from Member m
+     */
+    public <T> List<T> findAll_Projection(Class<T> type) {
+        return projectionQuery(type).fetch();
+    }
+
+    public <T> List<T> findByUsername_Projection(String username, Class<T> type) {
+        return projectionQuery(type)
+                .where(member.username.eq(username))
+                .fetch();
+    }
+
+    /**
+     * team 필드가 있을 때만 team 을 join
+     */
+    private <T> JPAQuery<T> projectionQuery(Class<T> type) {
+        MemberProjection<T> projection = projectionPlanner.plan(type);
+        JPAQuery<T> query = queryFactory
+                .select(projection)
+                .from(member);
+        if (projection.isJoinTeam()) query.leftJoin(member.team, team);
+        return query;
+    }
+
     /**
      * 검색 동적 쿼리 (builder 사용)
      */
@@ -71,7 +99,9 @@ public class MemberJpaRepository {
 
         //null, "" 체크 -> StringUtils.hasText
         if(hasText(condition.getUsername()))
-            builder.and(member.username.eq(condition.getUsername()));
+            builder.and(condition.isIgnoreCase()
+                    ? member.normalizedUsername.eq(Member.normalizeUsername(condition.getUsername()))
+                    : member.username.eq(condition.getUsername()));
         if(hasText(condition.getTeamName()))
             builder.and(team.name.eq(condition.getTeamName()));
         if(condition.getAgeGoe() != null)
@@ -80,12 +110,7 @@ public class MemberJpaRepository {
             builder.and(member.age.loe(condition.getAgeLoe()));
 
         return queryFactory
-                .select(new QMemberTeamDto(
-                            member.id.as("memberId"),
-                            member.username,
-                            member.age,
-                            team.id.as("teamId"),
-                            team.name.as("teamName")))
+                .select(MEMBER_TEAM_DTO)
                 .from(member)
                 .leftJoin(member.team, team)
                 .where(builder)
@@ -93,44 +118,13 @@ public class MemberJpaRepository {
     }
 
     /**
-     * 검색 동적 쿼리 (BooleanExpression 메서드 이용)
+     * 검색 동적 쿼리 (MemberSearchPredicates - 조건 조합별로 미리 만들어둔 where 절에 값만 바인딩)
      */
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
+        return where(queryFactory
+                .select(MEMBER_TEAM_DTO)
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                        )
+                .leftJoin(member.team, team), condition)
                 .fetch();
     }
-
-    private BooleanExpression usernameEq(String username) {
-        if(hasText(username)) return member.username.eq(username);
-        return null;
-    }
-
-    private BooleanExpression teamNameEq(String teamName) {
-        if(hasText(teamName)) return team.name.eq(teamName);
-        return null;
-    }
-
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        if(ageGoe != null) return member.age.goe(ageGoe);
-        return null;
-    }
-
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        if(ageLoe != null) return member.age.loe(ageLoe);
-        return null;
-    }
 }
@@ -0,0 +1,46 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.FactoryExpressionBase;
+import com.querydsl.core.types.Visitor;
+
+import java.util.List;
+
+/**
+ * MemberProjectionPlanner 가 만든 DTO 프로젝션
+ * - select 절에는 DTO 필드와 이름이 같은 경로만 들어간다
+ * - DTO 변환은 FastProjections.fields (행마다 리플렉션 X)
+ */
+public class MemberProjection<T> extends FactoryExpressionBase<T> {
+
+    private final FastProjection<T> projection;
+    private final boolean joinTeam;
+
+    MemberProjection(Class<T> type, FastProjection<T> projection, boolean joinTeam) {
+        super(type);
+        this.projection = projection;
+        this.joinTeam = joinTeam;
+    }
+
+    /**
+     * team 필드를 요청했을 때만 join
+     */
+    public boolean isJoinTeam() {
+        return joinTeam;
+    }
+
+    @Override
+    public List<Expression<?>> getArgs() {
+        return projection.getArgs();
+    }
+
+    @Override
+    public T newInstance(Object... values) {
+        return projection.newInstance(values);
+    }
+
+    @Override
+    public <R, C> R accept(Visitor<R, C> v, C context) {
+        return v.visit(this, context);
+    }
+}
@@ -0,0 +1,75 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Path;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * DTO 클래스만 주면 필요한 컬럼만 select 하는 프로젝션을 만들어준다
+ * - DTO 필드 이름으로 QMember, QTeam 경로를 찾음 (id/memberId, username, age, teamId, teamName)
+ * - 이름이 맞지 않는 필드는 select 하지 않고 기본값으로 둔다
+ * - 한번 만든 프로젝션은 클래스별로 캐시
+ */
+@Component
+public class MemberProjectionPlanner {
+
+    private static final Map<String, Path<?>> PATHS = new LinkedHashMap<>();
+    private static final Set<String> TEAM_FIELDS = Set.of("teamId", "teamName");
+
+    static {
+        PATHS.put("id", member.id);
+        PATHS.put("memberId", member.id);
+        PATHS.put("username", member.username);
+        PATHS.put("age", member.age);
+        PATHS.put("teamId", team.id);
+        PATHS.put("teamName", team.name);
+    }
+
+    private final Map<Class<?>, MemberProjection<?>> cache = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    public <T> MemberProjection<T> plan(Class<T> type) {
+        return (MemberProjection<T>) cache.computeIfAbsent(type, this::create);
+    }
+
+    private <T> MemberProjection<T> create(Class<T> type) {
+        List<Expression<?>> args = new ArrayList<>();
+        boolean joinTeam = false;
+        for (Field field : type.getDeclaredFields()) {
+            Path<?> path = PATHS.get(field.getName());
+            if (path == null || Modifier.isStatic(field.getModifiers()) || Modifier.isFinal(field.getModifiers()))
+                continue;
+            if (!wrap(field.getType()).isAssignableFrom(wrap(path.getType())))
+                throw new IllegalArgumentException(type.getSimpleName() + "." + field.getName()
+                        + " 타입이 " + path.getType().getSimpleName() + " 과 맞지 않음");
+
+            //경로 이름과 필드 이름이 다르면 별칭 (team.name -> teamName)
+            boolean sameName = path.getMetadata().getName().equals(field.getName());
+            args.add(sameName ? path : ExpressionUtils.as(path, field.getName()));
+            joinTeam |= TEAM_FIELDS.contains(field.getName());
+        }
+        if (args.isEmpty())
+            throw new IllegalArgumentException(type.getSimpleName() + " 에 Member, Team 경로와 이름이 같은 필드가 없음");
+
+        FastProjection<T> projection = FastProjections.fields(type, args.toArray(new Expression<?>[0]));
+        return new MemberProjection<>(type, projection, joinTeam);
+    }
+
+    private static Class<?> wrap(Class<?> type) {
+        return MethodType.methodType(type).wrap().returnType();
+    }
+}
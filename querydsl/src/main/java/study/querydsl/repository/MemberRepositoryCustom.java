@@ -2,13 +2,20 @@ package study.querydsl.repository;
 
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface MemberRepositoryCustom {
     List<MemberTeamDto> search(MemberSearchCondition condition);
     Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable);
     Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable);
+    Page<MemberTeamDto> searchPageAdaptive(MemberSearchCondition condition, Pageable pageable);
+    long searchEach(MemberSearchCondition condition, Consumer<MemberTeamDto> action);
+    List<MemberTeamDto> searchTopPerTeam(MemberSearchCondition condition, Sort sort, int limit);
+    List<Member> findMembers(MemberSearchCondition condition, MemberFetchPlan plan);
 }
@@ -1,28 +1,46 @@
 package study.querydsl.repository;
 
-import com.querydsl.core.QueryResults;
+import com.mysema.commons.lang.CloseableIterator;
 import com.querydsl.core.types.Predicate;
-import com.querydsl.core.types.dsl.BooleanExpression;
 import com.querydsl.jpa.impl.JPAQuery;
 import com.querydsl.jpa.impl.JPAQueryFactory;
 import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.support.PageableExecutionUtils;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import org.springframework.util.StringUtils;
+import study.querydsl.change.MemberDataVersion;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
-import study.querydsl.dto.QMemberTeamDto;
 import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
+import study.querydsl.shard.ShardedMemberStore;
+import study.querydsl.summary.MemberCountSummary;
+import study.querydsl.writebehind.MemberAgeWriteBehind;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static org.springframework.util.StringUtils.hasText;
 import static study.querydsl.entity.QMember.member;
 import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.where;
 
 /**
  * 이름은 꼭 MemberRepository + Impl  (규칙)
@@ -31,57 +49,61 @@ import static study.querydsl.entity.QTeam.team;
 public class MemberRepositoryImpl implements MemberRepositoryCustom{
 
     private final JPAQueryFactory queryFactory;
+    private final MemberDataVersion memberDataVersion;
+    private final MemberTopPerTeamQuery topPerTeamQuery;
+    private final MemberCountSummary memberCountSummary;
+    private final AdaptivePaging adaptivePaging;
+    private final ObjectProvider<ShardedMemberStore> shardedMemberStore;    //member.shard.enabled 일 때만
+    private final ObjectProvider<MemberAgeWriteBehind> memberAgeWriteBehind;    //member.write-behind.enabled 일 때만
+    private final ObjectProvider<PagePrefetch> pagePrefetch;    //member.prefetch.enabled 일 때만
+
+    //인덱스 없는 정렬로 조회할 수 있는 최대 깊이 (offset + size)
+    static final int TOP_N_WINDOW = 10_000;
+
+    //같은 조건, 같은 페이지로 동시에 들어온 검색은 쿼리 한번으로
+    private final SingleFlight<SearchKey, Object> searches = new SingleFlight<>();
 
     /**
      * 4가지 검색조건 동적 쿼리 
      */
     @Override
     public List<MemberTeamDto> search(MemberSearchCondition condition) {
-        return queryFactory
-                    .select(new QMemberTeamDto(
-                            member.id.as("memberId"),
-                            member.username,
-                            member.age,
-                            team.id.as("teamId"),
-                            team.name.as("teamName")))
+        ShardedMemberStore sharded = shardedMemberStore.getIfAvailable();
+        if (sharded != null) return coalesce("search", condition, null, () -> sharded.search(condition));
+        List<MemberTeamDto> results = coalesce("search", condition, null, () -> Collections.unmodifiableList(where(queryFactory
+                    .select(MEMBER_TEAM_DTO)
                     .from(member)
-                    .leftJoin(member.team, team)
-                    .where(
-                            usernameEq(condition.getUsername()),
-                            teamNameEq(condition.getTeamName()),
-                            ageGoe(condition.getAgeGoe()),
-                            ageLoe(condition.getAgeLoe())
-                    )
-                    .fetch();
+                    .leftJoin(member.team, team), condition)
+                    .fetch()));
+        //아직 반영 안된 나이 변경은 이 서버에서 바로 보이도록
+        MemberAgeWriteBehind writeBehind = memberAgeWriteBehind.getIfAvailable();
+        return writeBehind == null ? results : writeBehind.overlay(condition, results);
     }
 
     /**
-     * fetchResults()로 자동으로 쿼리를 2방 날리기
+     * content 쿼리 + total (fetchResults()의 count 쿼리 대신 요약 테이블 합계)
      */
     @Override
     public Page<MemberTeamDto> searchPageSimple(MemberSearchCondition condition, Pageable pageable) {
-        QueryResults<MemberTeamDto> results = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
+        return prefetched("searchPageSimple", condition, pageable, page -> fetchPageSimple(condition, page));
+    }
+
+    private Page<MemberTeamDto> fetchPageSimple(MemberSearchCondition condition, Pageable pageable) {
+        ShardedMemberStore sharded = shardedMemberStore.getIfAvailable();
+        if (sharded != null) return sharded.searchPage(condition, pageable);
+        MemberSearchSort.Plan sort = MemberSearchSort.plan(pageable.getSort());
+        if (!sort.isIndexed()) return fetchPageTopN(condition, pageable, sort);
+
+        List<MemberTeamDto> content = where(queryFactory
+                .select(MEMBER_TEAM_DTO)
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                //.orderBy()이런게 들어가도 total 카운트 쿼리에선 생략됨
+                .leftJoin(member.team, team), condition)
+                .orderBy(sort.getOrders())
                 .offset(pageable.getOffset())   //몇 번부터 시작
                 .limit(pageable.getPageSize())  //한번에 몇개 까지 조회할지
-                .fetchResults();//querydsl 이 content 쿼리, count 쿼리 두번 날림  (fetch 는 content 만)
+                .fetch();
 
-        List<MemberTeamDto> content = results.getResults();
-        long total = results.getTotal();    //total count
+        long total = total(condition);    //total count (요약 테이블로 계산할 수 없으면 count 쿼리)
 
         return new PageImpl<>(content, pageable, total);    //Page 의 구현체에 (content, pageable, total) 순
     }
@@ -92,61 +114,209 @@ public class MemberRepositoryImpl implements MemberRepositoryCustom{
      */
     @Override
     public Page<MemberTeamDto> searchPageComplex(MemberSearchCondition condition, Pageable pageable) {
-        List<MemberTeamDto> content = queryFactory
-                .select(new QMemberTeamDto(
-                        member.id.as("memberId"),
-                        member.username,
-                        member.age,
-                        team.id.as("teamId"),
-                        team.name.as("teamName")))
+        return prefetched("searchPageComplex", condition, pageable, page -> fetchPageComplex(condition, page));
+    }
+
+    private Page<MemberTeamDto> fetchPageComplex(MemberSearchCondition condition, Pageable pageable) {
+        ShardedMemberStore sharded = shardedMemberStore.getIfAvailable();
+        if (sharded != null) return sharded.searchPage(condition, pageable);
+        MemberSearchSort.Plan sort = MemberSearchSort.plan(pageable.getSort());
+        if (!sort.isIndexed()) return fetchPageTopN(condition, pageable, sort);
+
+        List<MemberTeamDto> content = where(queryFactory
+                .select(MEMBER_TEAM_DTO)
                 .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                )
-                //.orderBy()이런게 들어가도 total 카운트 쿼리에선 생략됨
+                .leftJoin(member.team, team), condition)
+                .orderBy(sort.getOrders())
                 .offset(pageable.getOffset())   //몇 번부터 시작
                 .limit(pageable.getPageSize())  //한번에 몇개 까지 조회할지
                 .fetch();//querydsl 이 content 쿼리, count 쿼리 두번 날림  (fetch 는 content 만)
 
-        JPAQuery<Member> countQuery = queryFactory
-                .select(member)
-                .from(member)
-                .leftJoin(member.team, team)
-                .where(
-                        usernameEq(condition.getUsername()),
-                        teamNameEq(condition.getTeamName()),
-                        ageGoe(condition.getAgeGoe()),
-                        ageLoe(condition.getAgeLoe())
-                );
 //        return new PageImpl<>(content, pageable, total);    //Page 의 구현체에 (content, pageable, total) 순
 
         //첫 페이지나 마지막 일 때는 자동으로 count 쿼리가 안나간다 -> pageableExecutionUtils
-        return PageableExecutionUtils.getPage(content, pageable, () -> countQuery.fetchCount());
+        return PageableExecutionUtils.getPage(content, pageable, () -> total(condition));
+    }
+
+    /**
+     * 조건 조합별로 실제 걸린 시간을 보고 content + total 을 가져오는 방식을 고른다 (AdaptivePaging)
+     */
+    @Override
+    public Page<MemberTeamDto> searchPageAdaptive(MemberSearchCondition condition, Pageable pageable) {
+        return coalesce("searchPageAdaptive", condition, pageable, () -> fetchPageAdaptive(condition, pageable));
+    }
+
+    private Page<MemberTeamDto> fetchPageAdaptive(MemberSearchCondition condition, Pageable pageable) {
+        ShardedMemberStore sharded = shardedMemberStore.getIfAvailable();
+        if (sharded != null) return sharded.searchPage(condition, pageable);
+        MemberSearchSort.Plan sort = MemberSearchSort.plan(pageable.getSort());
+        if (!sort.isIndexed()) return fetchPageTopN(condition, pageable, sort);
+        return adaptivePaging.page(condition, pageable, sort);
+    }
+
+    /**
+     * 인덱스로 정렬할 수 없는 정렬 (팀명, 여러 컬럼)
+     * - offset + size 가 TOP_N_WINDOW 이내인 페이지만 허용 -> DB 는 전체 정렬 대신 상위 N 개만 유지하며 정렬 (top-N)
+     * - 정렬, 페이지 자르기는 id 만 조회해서 하고 (좁은 행), 그 페이지 행만 다시 조회해서 id 순서대로 맞춘다 (deferred join)
+     */
+    private Page<MemberTeamDto> fetchPageTopN(MemberSearchCondition condition, Pageable pageable, MemberSearchSort.Plan sort) {
+        if (pageable.getOffset() + pageable.getPageSize() > TOP_N_WINDOW) {
+            throw new InvalidSortException("인덱스 없는 정렬은 앞쪽 " + TOP_N_WINDOW + "건까지만 조회할 수 있습니다 : " + pageable.getSort());
+        }
+
+        List<Long> ids = where(queryFactory
+                .select(member.id)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .orderBy(sort.getOrders())
+                .offset(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .fetch();
+
+        List<MemberTeamDto> content = new ArrayList<>(ids.size());
+        if (!ids.isEmpty()) {
+            Map<Long, MemberTeamDto> rows = queryFactory
+                    .select(MEMBER_TEAM_DTO)
+                    .from(member)
+                    .leftJoin(member.team, team)
+                    .where(member.id.in(ids))
+                    .fetch().stream()
+                    .collect(Collectors.toMap(MemberTeamDto::getMemberId, dto -> dto));
+            for (Long id : ids) {
+                MemberTeamDto row = rows.get(id);
+                if (row != null) content.add(row);     //두 쿼리 사이에 삭제된 행은 빠짐
+            }
+        }
+
+        return PageableExecutionUtils.getPage(content, pageable, () -> total(condition));
+    }
+
+    /**
+     * (팀, 나이대) 요약 테이블로 합계를 구할 수 있으면 회원 테이블을 세지 않는다
+     */
+    private long total(MemberSearchCondition condition) {
+        OptionalLong summarized = memberCountSummary.count(condition);
+        return summarized.isPresent() ? summarized.getAsLong() : countQuery(condition).fetchCount();
     }
 
+    private JPAQuery<Member> countQuery(MemberSearchCondition condition) {
+        return where(queryFactory
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team), condition);
+    }
 
+    /**
+     * 결과를 List 로 모으지 않고 한 행씩 넘겨주기 (대량 조회 응답을 바로 스트림에 쓸 때)
+     * -iterate()는 hibernate scroll 을 사용 -> 커넥션을 잡고 있어야해서 트랜잭션 안에서 실행
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long searchEach(MemberSearchCondition condition, Consumer<MemberTeamDto> action) {
+        CloseableIterator<MemberTeamDto> iterator = where(queryFactory
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .setHint(QueryHints.FETCH_SIZE, 500)
+                .iterate();
 
-    private BooleanExpression usernameEq(String username) {
-        if(hasText(username)) return member.username.eq(username);
-        return null;
+        long count = 0;
+        try {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                count++;
+            }
+        } finally {
+            iterator.close();
+        }
+        return count;
     }
 
-    private BooleanExpression teamNameEq(String teamName) {
-        if(hasText(teamName)) return team.name.eq(teamName);
-        return null;
+    /**
+     * 팀별 상위 limit 명 (ex. 팀마다 나이 많은 순 3명 -> sort = age desc, limit = 3)
+     */
+    @Override
+    public List<MemberTeamDto> searchTopPerTeam(MemberSearchCondition condition, Sort sort, int limit) {
+        return topPerTeamQuery.find(condition, sort, limit);
     }
 
-    private BooleanExpression ageGoe(Integer ageGoe) {
-        if(ageGoe != null) return member.age.goe(ageGoe);
-        return null;
+    /**
+     * 검색 조건에 맞는 Member 엔티티 (연관관계는 plan 만큼 같이 로딩)
+     * - 엔티티는 영속성 컨텍스트에 묶여 있으므로 다른 요청과 결과를 공유하지 않는다 (coalesce 안함)
+     */
+    @Override
+    public List<Member> findMembers(MemberSearchCondition condition, MemberFetchPlan plan) {
+        return where(plan.selectFrom(queryFactory, hasText(condition.getTeamName())), condition)
+                .orderBy(member.id.asc())
+                .fetch();
+    }
+
+    /**
+     * 같은 검색이 이미 실행 중이면 그 결과를 같이 받는다
+     * - 키에 데이터 버전을 넣어서, 커밋된 변경 이후에 온 요청은 변경 전에 시작한 쿼리에 끼지 않게
+     * - 쓰기 트랜잭션 안에서는 자기가 쓴(아직 커밋 안된) 데이터가 보여야 하므로 혼자 실행
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T coalesce(String method, MemberSearchCondition condition, Pageable pageable, Supplier<T> query) {
+        if (inWriteTransaction()) return query.get();
+        SearchKey key = SearchKey.of(method, condition, pageable, memberDataVersion.current());
+        return (T) searches.execute(key, query::get);
+    }
+
+    /**
+     * member.prefetch.enabled 이면 미리 조회해둔 페이지가 있으면 그걸로, 응답할 페이지 다음 페이지는 미리 조회 (PagePrefetch)
+     */
+    private Page<MemberTeamDto> prefetched(String method, MemberSearchCondition condition, Pageable pageable,
+                                           Function<Pageable, Page<MemberTeamDto>> fetch) {
+        PagePrefetch prefetch = pagePrefetch.getIfAvailable();
+        if (prefetch == null || pageable.isUnpaged() || inWriteTransaction()) {
+            return coalesce(method, condition, pageable, () -> fetch.apply(pageable));
+        }
+        long version = memberDataVersion.current();
+        Page<MemberTeamDto> page = pageable.getPageNumber() > 0
+                ? prefetch.get(SearchKey.of(method, condition, pageable, version))
+                : null;
+        if (page == null) page = coalesce(method, condition, pageable, () -> fetch.apply(pageable));
+        if (page.hasNext()) {
+            Pageable next = pageable.next();
+            prefetch.prefetch(SearchKey.of(method, condition, next, version), () -> fetch.apply(next));
+        }
+        return page;
+    }
+
+    private static boolean inWriteTransaction() {
+        return TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly();
     }
 
-    private BooleanExpression ageLoe(Integer ageLoe) {
-        if(ageLoe != null) return member.age.loe(ageLoe);
-        return null;
+    /**
+     * 검색 키 (빈 문자열 조건은 조건 없음과 같은 쿼리라서 null 로 맞춘다)
+     */
+    @Value
+    static class SearchKey {
+        String method;
+        String username;
+        boolean ignoreCase;
+        String teamName;
+        Integer ageGoe;
+        Integer ageLoe;
+        long offset;
+        int pageSize;
+        Sort sort;
+        long dataVersion;
+
+        static SearchKey of(String method, MemberSearchCondition condition, Pageable pageable, long dataVersion) {
+            boolean paged = pageable != null && pageable.isPaged();
+            return new SearchKey(method,
+                    hasText(condition.getUsername()) ? condition.getUsername() : null,
+                    condition.isIgnoreCase(),
+                    hasText(condition.getTeamName()) ? condition.getTeamName() : null,
+                    condition.getAgeGoe(),
+                    condition.getAgeLoe(),
+                    paged ? pageable.getOffset() : -1,
+                    paged ? pageable.getPageSize() : -1,
+                    pageable == null ? Sort.unsorted() : pageable.getSort(),
+                    dataVersion);
+        }
     }
 }
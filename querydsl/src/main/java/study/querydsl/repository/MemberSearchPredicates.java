@@ -0,0 +1,96 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.ExpressionUtils;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.Param;
+import com.querydsl.jpa.impl.JPAQuery;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.QMemberTeamDto;
+import study.querydsl.entity.Member;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * MemberSearchCondition 검색 조건 (MemberRepositoryImpl, MemberJpaRepository 공용)
+ * - 조건 값은 Param(:username 같은 파라미터) 으로 두고 실행할 때 값만 바인딩
+ *   -> 조건 조합(shape)이 같으면 where 절 트리가 같으므로 조합마다 미리 만들어 두고 재사용
+ * - ignoreCase 면 회원명은 정규화한 값으로 normalizedUsername 과 비교 (lower(username) 처럼 인덱스를 못타는 함수 없이)
+ * - 프로젝션(QMemberTeamDto), 조건 트리 모두 불변이라 여러 스레드에서 같이 써도 된다
+ * - 검색할 때마다 BooleanExpression, QMemberTeamDto 를 새로 만들지 않음
+ */
+public final class MemberSearchPredicates {
+
+    public static final QMemberTeamDto MEMBER_TEAM_DTO = new QMemberTeamDto(
+            member.id.as("memberId"),
+            member.username,
+            member.age,
+            team.id.as("teamId"),
+            team.name.as("teamName"));
+
+    static final Param<String> USERNAME = new Param<>(String.class, "username");
+    static final Param<String> NORMALIZED_USERNAME = new Param<>(String.class, "normalizedUsername");
+    static final Param<String> TEAM_NAME = new Param<>(String.class, "teamName");
+    static final Param<Integer> AGE_GOE = new Param<>(Integer.class, "ageGoe");
+    static final Param<Integer> AGE_LOE = new Param<>(Integer.class, "ageLoe");
+
+    //조건별 비트 (shape = 값이 있는 조건의 비트 합)
+    static final int HAS_USERNAME = 1;
+    static final int HAS_TEAM_NAME = 1 << 1;
+    static final int HAS_AGE_GOE = 1 << 2;
+    static final int HAS_AGE_LOE = 1 << 3;
+    static final int IGNORE_CASE = 1 << 4;     //HAS_USERNAME 일 때만
+
+    private static final Predicate[] BY_SHAPE = new Predicate[32];
+
+    static {
+        for (int shape = 0; shape < BY_SHAPE.length; shape++) {
+            List<Predicate> predicates = new ArrayList<>();
+            if ((shape & HAS_USERNAME) != 0) {
+                predicates.add((shape & IGNORE_CASE) != 0
+                        ? member.normalizedUsername.eq(NORMALIZED_USERNAME)
+                        : member.username.eq(USERNAME));
+            }
+            if ((shape & HAS_TEAM_NAME) != 0) predicates.add(team.name.eq(TEAM_NAME));
+            if ((shape & HAS_AGE_GOE) != 0) predicates.add(member.age.goe(AGE_GOE));
+            if ((shape & HAS_AGE_LOE) != 0) predicates.add(member.age.loe(AGE_LOE));
+            BY_SHAPE[shape] = ExpressionUtils.allOf(predicates);   //조건이 없으면 null -> where 절 생략
+        }
+    }
+
+    private MemberSearchPredicates() {
+    }
+
+    /**
+     * 값이 있는 조건 조합 (null, "" 은 조건 없음)
+     */
+    public static int shapeOf(MemberSearchCondition condition) {
+        int shape = 0;
+        if (hasText(condition.getUsername())) shape |= condition.isIgnoreCase() ? HAS_USERNAME | IGNORE_CASE : HAS_USERNAME;
+        if (hasText(condition.getTeamName())) shape |= HAS_TEAM_NAME;
+        if (condition.getAgeGoe() != null) shape |= HAS_AGE_GOE;
+        if (condition.getAgeLoe() != null) shape |= HAS_AGE_LOE;
+        return shape;
+    }
+
+    /**
+     * 조합에 맞는 where 절을 붙이고 파라미터 값 바인딩
+     */
+    public static <T> JPAQuery<T> where(JPAQuery<T> query, MemberSearchCondition condition) {
+        int shape = shapeOf(condition);
+        Predicate predicate = BY_SHAPE[shape];
+        if (predicate == null) return query;
+
+        query.where(predicate);
+        if ((shape & IGNORE_CASE) != 0) query.set(NORMALIZED_USERNAME, Member.normalizeUsername(condition.getUsername()));
+        else if ((shape & HAS_USERNAME) != 0) query.set(USERNAME, condition.getUsername());
+        if ((shape & HAS_TEAM_NAME) != 0) query.set(TEAM_NAME, condition.getTeamName());
+        if ((shape & HAS_AGE_GOE) != 0) query.set(AGE_GOE, condition.getAgeGoe());
+        if ((shape & HAS_AGE_LOE) != 0) query.set(AGE_LOE, condition.getAgeLoe());
+        return query;
+    }
+}
@@ -0,0 +1,150 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.types.Order;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import lombok.Getter;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberTeamDto;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+/**
+ * Pageable 의 sort 를 Querydsl OrderSpecifier 로 변환 (허용한 필드만)
+ * - 같은 값끼리 순서가 매번 달라지지 않게 마지막에 항상 member.id 를 붙인다 (페이지 사이에 중복, 누락 방지)
+ * - 인덱스로 정렬할 수 있는지도 같이 판단
+ *   인덱스 정렬 : 정렬 키가 id 뿐이거나, 인덱스가 있는 member 컬럼 하나 (+ id)
+ *   그 외(팀명, 여러 컬럼) : DB 가 조건에 맞는 행을 모두 정렬해야 함 -> MemberRepositoryImpl 에서 top-N 으로 처리
+ * - 샤드별 결과를 합칠 때는 같은 순서의 Comparator 로 메모리에서 병합 (comparator)
+ */
+public final class MemberSearchSort {
+
+    private static final Map<String, SortKey> KEYS = Map.of(
+            "id", new SortKey(member.id, true),
+            "memberId", new SortKey(member.id, true),
+            "username", new SortKey(member.username, true),  //idx_member_username
+            "age", new SortKey(member.age, true),            //idx_member_age
+            "teamId", new SortKey(member.team.id, true),     //외래키 인덱스
+            "teamName", new SortKey(team.name, false));      //join 한 쪽 컬럼이라 member 인덱스로 정렬 불가
+
+    //메모리에서 정렬할 때 (샤드 결과 병합) 같은 필드
+    private static final Map<String, Function<MemberTeamDto, Comparable<?>>> VALUES = Map.of(
+            "id", MemberTeamDto::getMemberId,
+            "memberId", MemberTeamDto::getMemberId,
+            "username", MemberTeamDto::getUsername,
+            "age", MemberTeamDto::getAge,
+            "teamId", MemberTeamDto::getTeamId,
+            "teamName", MemberTeamDto::getTeamName);
+
+    private MemberSearchSort() {
+    }
+
+    public static Plan plan(Sort sort) {
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        int sortColumns = 0;
+        boolean indexed = true;
+        boolean hasId = false;
+        Order lastDirection = Order.ASC;
+
+        for (Sort.Order order : sort) {
+            SortKey key = KEYS.get(order.getProperty());
+            if (key == null) throw new InvalidSortException("정렬할 수 없는 필드 : " + order.getProperty());
+            orders.add(orderOf(key.path, order));
+            lastDirection = order.isAscending() ? Order.ASC : Order.DESC;
+
+            if (key.path == member.id) {
+                hasId = true;
+                break;  //id 는 유일하므로 뒤의 정렬 키는 의미 없음
+            }
+            sortColumns++;
+            indexed &= key.indexed;
+        }
+
+        if (!hasId) orders.add(lastDirection == Order.ASC ? member.id.asc() : member.id.desc());
+        return new Plan(orders.toArray(new OrderSpecifier[0]), indexed && sortColumns <= 1);
+    }
+
+    /**
+     * plan 과 같은 순서로 정렬하는 Comparator (null 은 DB 처럼 오름차순에서 앞, 내림차순에서 뒤)
+     */
+    public static Comparator<MemberTeamDto> comparator(Sort sort) {
+        Comparator<MemberTeamDto> comparator = null;
+        boolean hasId = false;
+        boolean ascending = true;
+        for (Sort.Order order : sort) {
+            Function<MemberTeamDto, Comparable<?>> value = VALUES.get(order.getProperty());
+            if (value == null) throw new InvalidSortException("정렬할 수 없는 필드 : " + order.getProperty());
+            Comparator<MemberTeamDto> next = comparatorOf(value, order);
+            comparator = comparator == null ? next : comparator.thenComparing(next);
+            ascending = order.isAscending();
+            if (KEYS.get(order.getProperty()).path == member.id) {
+                hasId = true;
+                break;
+            }
+        }
+        if (!hasId) {
+            Comparator<MemberTeamDto> id = Comparator.comparing(MemberTeamDto::getMemberId);
+            if (!ascending) id = id.reversed();
+            comparator = comparator == null ? id : comparator.thenComparing(id);
+        }
+        return comparator;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Comparator<MemberTeamDto> comparatorOf(Function<MemberTeamDto, Comparable<?>> value, Sort.Order order) {
+        Comparator<Comparable> natural = Comparator.naturalOrder();
+        if (order.isDescending()) natural = natural.reversed();
+        Comparator<Comparable> withNulls;
+        switch (order.getNullHandling()) {
+            case NULLS_FIRST:
+                withNulls = Comparator.nullsFirst(natural);
+                break;
+            case NULLS_LAST:
+                withNulls = Comparator.nullsLast(natural);
+                break;
+            default:
+                withNulls = order.isAscending() ? Comparator.nullsFirst(natural) : Comparator.nullsLast(natural);
+        }
+        return Comparator.comparing(dto -> (Comparable) value.apply(dto), withNulls);
+    }
+
+    private static OrderSpecifier<?> orderOf(ComparableExpressionBase<?> path, Sort.Order order) {
+        OrderSpecifier<?> specifier = order.isAscending() ? path.asc() : path.desc();
+        switch (order.getNullHandling()) {
+            case NULLS_FIRST:
+                return specifier.nullsFirst();
+            case NULLS_LAST:
+                return specifier.nullsLast();
+            default:
+                return specifier;
+        }
+    }
+
+    @Getter
+    public static class Plan {
+        private final OrderSpecifier<?>[] orders;
+        private final boolean indexed;
+
+        Plan(OrderSpecifier<?>[] orders, boolean indexed) {
+            this.orders = orders;
+            this.indexed = indexed;
+        }
+    }
+
+    private static class SortKey {
+        private final ComparableExpressionBase<?> path;
+        private final boolean indexed;
+
+        SortKey(ComparableExpressionBase<?> path, boolean indexed) {
+            this.path = path;
+            this.indexed = indexed;
+        }
+    }
+}
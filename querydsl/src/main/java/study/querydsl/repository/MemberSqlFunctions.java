@@ -0,0 +1,20 @@
+package study.querydsl.repository;
+
+import org.hibernate.boot.MetadataBuilder;
+import org.hibernate.boot.spi.MetadataBuilderContributor;
+import org.hibernate.dialect.function.SQLFunctionTemplate;
+import org.hibernate.type.StandardBasicTypes;
+
+/**
+ * jpql 에서 쓸 SQL 함수 등록 (hibernate.metadata_builder_contributor, QuerydslApplication 에서 설정)
+ * - count_over() : count(*) over() -> 페이지 content 조회 한번에 조건에 맞는 전체 행 수까지 (AdaptivePaging COMBINED)
+ */
+public class MemberSqlFunctions implements MetadataBuilderContributor {
+
+    public static final String COUNT_OVER = "count_over";
+
+    @Override
+    public void contribute(MetadataBuilder metadataBuilder) {
+        metadataBuilder.applySqlFunction(COUNT_OVER, new SQLFunctionTemplate(StandardBasicTypes.LONG, "count(*) over()"));
+    }
+}
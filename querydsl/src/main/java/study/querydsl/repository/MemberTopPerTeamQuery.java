@@ -0,0 +1,234 @@
+package study.querydsl.repository;
+
+import com.querydsl.core.BooleanBuilder;
+import com.querydsl.core.types.Expression;
+import com.querydsl.core.types.Ops;
+import com.querydsl.core.types.OrderSpecifier;
+import com.querydsl.core.types.dsl.BooleanExpression;
+import com.querydsl.core.types.dsl.ComparableExpressionBase;
+import com.querydsl.core.types.dsl.Expressions;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.dialect.MariaDB103Dialect;
+import org.hibernate.dialect.MySQL8Dialect;
+import org.hibernate.dialect.Oracle8iDialect;
+import org.hibernate.dialect.PostgreSQL9Dialect;
+import org.hibernate.dialect.SQLServer2005Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Repository;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.QMember;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.where;
+
+/**
+ * 팀별 상위 K 명 ("팀마다 나이 많은 순 3명") 을 쿼리 한 번으로
+ * - WINDOW : row_number() over (partition by team_id order by ...) 네이티브 쿼리 (윈도우 함수를 지원하는 DB)
+ * - CORRELATED : "나보다 앞 순위인 같은 팀 회원 수 < K" 상관 서브쿼리 (JPQL, 모든 DB)
+ * - 팀이 없는 회원은 제외, 결과는 팀 id 순 -> 팀 안에서 정렬 순
+ */
+@Repository
+@RequiredArgsConstructor
+public class MemberTopPerTeamQuery {
+
+    public enum Strategy {WINDOW, CORRELATED}
+
+    //정렬 가능한 필드 -> (엔티티 경로, 컬럼)
+    private static final Map<String, SortColumn> COLUMNS = Map.of(
+            "id", new SortColumn(member.id, "m.member_id"),
+            "memberId", new SortColumn(member.id, "m.member_id"),
+            "username", new SortColumn(member.username, "m.username"),
+            "age", new SortColumn(member.age, "m.age"));
+
+    private final EntityManager em;
+    private final EntityManagerFactory emf;
+    private final JPAQueryFactory queryFactory;
+
+    private Strategy defaultStrategy;
+
+    @PostConstruct
+    public void init() {
+        Dialect dialect = emf.unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+        defaultStrategy = supportsWindowFunctions(dialect) ? Strategy.WINDOW : Strategy.CORRELATED;
+    }
+
+    public List<MemberTeamDto> find(MemberSearchCondition condition, Sort sort, int limit) {
+        return find(condition, sort, limit, defaultStrategy);
+    }
+
+    public List<MemberTeamDto> find(MemberSearchCondition condition, Sort sort, int limit, Strategy strategy) {
+        if (limit < 1) throw new IllegalArgumentException("limit 은 1 이상 : " + limit);
+        List<Key> keys = keysOf(sort);
+        return strategy == Strategy.WINDOW
+                ? findByWindow(condition, keys, limit)
+                : findByCorrelated(condition, keys, limit);
+    }
+
+    private List<MemberTeamDto> findByWindow(MemberSearchCondition condition, List<Key> keys, int limit) {
+        StringBuilder where = new StringBuilder("m.team_id is not null");
+        if (hasText(condition.getUsername())) {
+            where.append(condition.isIgnoreCase() ? " and m.normalized_username = :username" : " and m.username = :username");
+        }
+        if (hasText(condition.getTeamName())) where.append(" and t.name = :teamName");
+        if (condition.getAgeGoe() != null) where.append(" and m.age >= :ageGoe");
+        if (condition.getAgeLoe() != null) where.append(" and m.age <= :ageLoe");
+
+        StringBuilder orderBy = new StringBuilder();
+        for (Key key : keys) {
+            if (orderBy.length() > 0) orderBy.append(", ");
+            orderBy.append(key.column.sql).append(key.ascending ? " asc" : " desc");
+        }
+
+        String sql = "select member_id, username, age, team_id, team_name from ("
+                + " select m.member_id, m.username, m.age, t.team_id, t.name as team_name,"
+                + " row_number() over (partition by m.team_id order by " + orderBy + ") as rn"
+                + " from member m join team t on t.team_id = m.team_id"
+                + " where " + where
+                + ") ranked where rn <= :limit order by team_id, rn";
+
+        Query query = QueryTimeout.apply(em.createNativeQuery(sql));
+        query.setParameter("limit", limit);
+        if (hasText(condition.getUsername())) query.setParameter("username", usernameValue(condition));
+        if (hasText(condition.getTeamName())) query.setParameter("teamName", condition.getTeamName());
+        if (condition.getAgeGoe() != null) query.setParameter("ageGoe", condition.getAgeGoe());
+        if (condition.getAgeLoe() != null) query.setParameter("ageLoe", condition.getAgeLoe());
+
+        @SuppressWarnings("unchecked")
+        List<Object[]> rows = query.getResultList();
+        List<MemberTeamDto> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            result.add(new MemberTeamDto(
+                    ((Number) row[0]).longValue(),
+                    (String) row[1],
+                    ((Number) row[2]).intValue(),
+                    ((Number) row[3]).longValue(),
+                    (String) row[4]));
+        }
+        return result;
+    }
+
+    private List<MemberTeamDto> findByCorrelated(MemberSearchCondition condition, List<Key> keys, int limit) {
+        QMember ahead = new QMember("ahead");
+
+        //ahead 가 member 보다 앞 순위 : 앞의 키가 모두 같고 i 번째 키가 앞섬
+        BooleanBuilder aheadOfMember = new BooleanBuilder();
+        BooleanBuilder equalSoFar = new BooleanBuilder();
+        for (Key key : keys) {
+            ComparableExpressionBase<?> mine = key.column.path;
+            ComparableExpressionBase<?> theirs = key.column.on(ahead);
+            aheadOfMember.or(new BooleanBuilder(equalSoFar).and(key.ascending ? lt(theirs, mine) : lt(mine, theirs)));
+            equalSoFar.and(eq(theirs, mine));
+        }
+
+        BooleanBuilder sameFilter = new BooleanBuilder(ahead.team.eq(member.team));
+        if (hasText(condition.getUsername())) {
+            sameFilter.and(condition.isIgnoreCase()
+                    ? ahead.normalizedUsername.eq(usernameValue(condition))
+                    : ahead.username.eq(condition.getUsername()));
+        }
+        if (condition.getAgeGoe() != null) sameFilter.and(ahead.age.goe(condition.getAgeGoe()));
+        if (condition.getAgeLoe() != null) sameFilter.and(ahead.age.loe(condition.getAgeLoe()));
+        //팀명 조건은 같은 팀이라 member 쪽 조건과 같음
+
+        List<OrderSpecifier<?>> orders = new ArrayList<>();
+        orders.add(team.id.asc());
+        for (Key key : keys) orders.add(key.ascending ? key.column.path.asc() : key.column.path.desc());
+
+        return where(queryFactory
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .join(member.team, team), condition)
+                .where(queryFactory
+                        .select(ahead.count())
+                        .from(ahead)
+                        .where(sameFilter, aheadOfMember)
+                        .lt((long) limit))
+                .orderBy(orders.toArray(new OrderSpecifier[0]))
+                .fetch();
+    }
+
+    /**
+     * 정렬 키 + 마지막에 id (같은 순위가 없어야 팀별로 정확히 K 명)
+     */
+    private static List<Key> keysOf(Sort sort) {
+        List<Key> keys = new ArrayList<>();
+        boolean lastAscending = true;
+        for (Sort.Order order : sort) {
+            SortColumn column = COLUMNS.get(order.getProperty());
+            if (column == null) throw new InvalidSortException("정렬할 수 없는 필드 : " + order.getProperty());
+            keys.add(new Key(column, order.isAscending()));
+            lastAscending = order.isAscending();
+            if (column.path == member.id) return keys;
+        }
+        keys.add(new Key(COLUMNS.get("id"), lastAscending));
+        return keys;
+    }
+
+    //ignoreCase 면 normalizedUsername 과 비교할 값
+    private static String usernameValue(MemberSearchCondition condition) {
+        return condition.isIgnoreCase() ? Member.normalizeUsername(condition.getUsername()) : condition.getUsername();
+    }
+
+    private static boolean supportsWindowFunctions(Dialect dialect) {
+        return dialect instanceof H2Dialect
+                || dialect instanceof PostgreSQL9Dialect     //윈도우 함수는 8.4 부터 (PostgreSQL82Dialect 는 8.2~8.3)
+                || dialect instanceof MySQL8Dialect
+                || dialect instanceof MariaDB103Dialect
+                || dialect instanceof Oracle8iDialect
+                || dialect instanceof SQLServer2005Dialect;
+    }
+
+    private static BooleanExpression lt(Expression<?> left, Expression<?> right) {
+        return Expressions.booleanOperation(Ops.LT, left, right);
+    }
+
+    private static BooleanExpression eq(Expression<?> left, Expression<?> right) {
+        return Expressions.booleanOperation(Ops.EQ, left, right);
+    }
+
+    private static class SortColumn {
+        private final ComparableExpressionBase<?> path;
+        private final String sql;
+
+        SortColumn(ComparableExpressionBase<?> path, String sql) {
+            this.path = path;
+            this.sql = sql;
+        }
+
+        /**
+         * 같은 필드를 다른 별칭(ahead)으로
+         */
+        ComparableExpressionBase<?> on(QMember alias) {
+            if (path == member.id) return alias.id;
+            if (path == member.username) return alias.username;
+            return alias.age;
+        }
+    }
+
+    private static class Key {
+        private final SortColumn column;
+        private final boolean ascending;
+
+        Key(SortColumn column, boolean ascending) {
+            this.column = column;
+            this.ascending = ascending;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+/**
+ * normalized_username 이 비어 있는 회원 채우기 (컬럼이 생기기 전부터 있던 회원)
+ * - 정규화(NFKC)는 SQL 로 할 수 없어서 Member.normalizeUsername 으로 계산해서 batchSize 명씩 update
+ * - 시작할 때 한번, 요청을 받기 전에 (ignoreCase 검색이 이미 있던 회원을 놓치지 않도록)
+ */
+@Slf4j
+@Component
+public class NormalizedUsernameBackfill {
+
+    static final int BATCH_SIZE = 1000;
+
+    private static final String SELECT =
+            "select member_id, username from member"
+                    + " where normalized_username is null and username is not null order by member_id";
+    private static final String UPDATE =
+            "update member set normalized_username = ? where member_id = ? and normalized_username is null";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public NormalizedUsernameBackfill(DataSource dataSource, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.jdbcTemplate.setMaxRows(BATCH_SIZE);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void backfill() {
+        long total = 0;
+        int filled;
+        do {
+            filled = transactionTemplate.execute(status -> fillBatch());
+            total += filled;
+        } while (filled == BATCH_SIZE);
+        if (total > 0) log.info("normalized_username filled for {} members", total);
+    }
+
+    private int fillBatch() {
+        List<Object[]> rows = jdbcTemplate.query(SELECT, (rs, rowNum) -> new Object[]{
+                Member.normalizeUsername(rs.getString("username")), rs.getLong("member_id")});
+        if (!rows.isEmpty()) jdbcTemplate.batchUpdate(UPDATE, rows);
+        return rows.size();
+    }
+}
@@ -0,0 +1,58 @@
+package study.querydsl.repository;
+
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.persistence.OptimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 낙관적 락 충돌(@Version) 시 새 트랜잭션으로 다시 실행
+ * - 매번 새 트랜잭션(REQUIRES_NEW)이라 다시 조회한 최신 값으로 수정하게 됨
+ * - 바깥 트랜잭션 안에서 부르면 그 트랜잭션과는 별개로 커밋됨
+ */
+@Component
+public class OptimisticLockRetry {
+
+    private static final int DEFAULT_MAX_ATTEMPTS = 3;
+
+    private final TransactionTemplate transactionTemplate;
+
+    public OptimisticLockRetry(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public <T> T execute(TransactionCallback<T> action) {
+        return execute(DEFAULT_MAX_ATTEMPTS, action);
+    }
+
+    public <T> T execute(int maxAttempts, TransactionCallback<T> action) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(action);
+            } catch (OptimisticLockingFailureException | OptimisticLockException e) {
+                if (attempt >= maxAttempts) throw e;
+                backoff(attempt);
+            }
+        }
+    }
+
+    /**
+     * 같이 충돌한 쪽과 또 부딪히지 않게 조금씩 다르게 쉬기
+     */
+    private void backoff(int attempt) {
+        long millis = ThreadLocalRandom.current().nextLong(5, 20) * attempt;
+        try {
+            TimeUnit.MILLISECONDS.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("재시도 대기 중 인터럽트", e);
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Component;
+import study.querydsl.dto.MemberTeamDto;
+
+import javax.annotation.PreDestroy;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * 페이지 검색 후 다음 페이지를 미리 조회해서 잠깐 들고 있기 (member.prefetch.enabled=true)
+ * - 키는 검색 키 (조건, 페이지, 정렬, 데이터 버전) -> 데이터가 바뀌면 저절로 안 맞아서 다시 조회
+ * - 보관 : ttl 동안 최대 maxEntries 개 (오래 안 쓴 것부터 버림)
+ * - 예산 : 동시에 maxConcurrent 개까지만 미리 조회, 자리가 없으면 건너뜀 (실제 요청 처리를 방해하지 않도록)
+ * - 조회 중인 페이지가 요청되면 그 결과를 기다려서 쓴다
+ * 지표 : member.prefetch.requests (result=hit/miss), member.prefetch.hit.ratio, member.prefetch.loaded,
+ *        member.prefetch.skipped (예산 초과), member.prefetch.unused (쓰이지 않고 버려짐)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "member.prefetch", name = "enabled", havingValue = "true")
+public class PagePrefetch {
+
+    private final PrefetchProperties properties;
+    private final Semaphore budget;
+    private final ExecutorService executor;
+    private final Map<Object, Entry> pages;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final Counter loaded;
+    private final Counter skipped;
+    private final Counter unused;
+
+    public PagePrefetch(PrefetchProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.budget = new Semaphore(properties.getMaxConcurrent());
+        AtomicInteger threads = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(properties.getMaxConcurrent(), runnable -> {
+            Thread thread = new Thread(runnable, "member-prefetch-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pages = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entry> eldest) {
+                if (size() <= properties.getMaxEntries()) return false;
+                discarded(eldest.getValue());
+                return true;
+            }
+        };
+
+        FunctionCounter.builder("member.prefetch.requests", hits, AtomicLong::get).tag("result", "hit").register(meterRegistry);
+        FunctionCounter.builder("member.prefetch.requests", misses, AtomicLong::get).tag("result", "miss").register(meterRegistry);
+        Gauge.builder("member.prefetch.hit.ratio", this, PagePrefetch::hitRatio).register(meterRegistry);
+        this.loaded = Counter.builder("member.prefetch.loaded").register(meterRegistry);
+        this.skipped = Counter.builder("member.prefetch.skipped").register(meterRegistry);
+        this.unused = Counter.builder("member.prefetch.unused").register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 미리 조회해둔 페이지, 없으면 null
+     */
+    public Page<MemberTeamDto> get(Object key) {
+        Entry entry;
+        synchronized (pages) {
+            entry = pages.remove(key);     //한번 쓰면 버린다 (같은 페이지를 다시 보면 SingleFlight, ETag 쪽에서)
+        }
+        if (entry == null || entry.isExpired()) {
+            if (entry != null) discarded(entry);
+            misses.incrementAndGet();
+            return null;
+        }
+        entry.used = true;
+        try {
+            Page<MemberTeamDto> page = entry.page.get(properties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+            hits.incrementAndGet();
+            return page;
+        } catch (ExecutionException | TimeoutException e) {
+            misses.incrementAndGet();
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            misses.incrementAndGet();
+            return null;
+        }
+    }
+
+    /**
+     * 다음 페이지 미리 조회 예약 (이미 있거나 예산이 없으면 아무것도 안함)
+     */
+    public void prefetch(Object key, Supplier<Page<MemberTeamDto>> loader) {
+        CompletableFuture<Page<MemberTeamDto>> page = new CompletableFuture<>();
+        synchronized (pages) {
+            evictExpired();
+            if (pages.containsKey(key)) return;
+            if (!budget.tryAcquire()) {
+                skipped.increment();
+                return;
+            }
+            pages.put(key, new Entry(page, System.nanoTime() + properties.getTtl().toNanos()));
+        }
+        executor.execute(() -> {
+            try {
+                long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+                page.complete(QueryTimeout.within(deadline, loader));
+                loaded.increment();
+            } catch (RuntimeException e) {
+                log.debug("prefetch failed : {}", key, e);
+                page.completeExceptionally(e);
+                synchronized (pages) {
+                    pages.remove(key);
+                }
+            } finally {
+                budget.release();
+            }
+        });
+    }
+
+    public double hitRatio() {
+        long hit = hits.get();
+        long total = hit + misses.get();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private void evictExpired() {
+        Iterator<Entry> iterator = pages.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.isExpired()) {
+                discarded(entry);
+                iterator.remove();
+            }
+        }
+    }
+
+    private void discarded(Entry entry) {
+        if (!entry.used) unused.increment();
+    }
+
+    private static class Entry {
+        final CompletableFuture<Page<MemberTeamDto>> page;
+        final long expiresAt;
+        volatile boolean used;
+
+        Entry(CompletableFuture<Page<MemberTeamDto>> page, long expiresAt) {
+            this.page = page;
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired() {
+            return System.nanoTime() - expiresAt > 0;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package study.querydsl.repository;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 다음 페이지 미리 조회 설정 (member.prefetch.*)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "member.prefetch")
+public class PrefetchProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 미리 조회한 페이지를 보관하는 시간, 최대 개수
+     */
+    private Duration ttl = Duration.ofSeconds(10);
+    private int maxEntries = 256;
+
+    /**
+     * 동시에 실행할 수 있는 미리 조회 수 (넘으면 미리 조회하지 않음), 한번의 최대 실행 시간
+     */
+    private int maxConcurrent = 2;
+    private Duration timeout = Duration.ofSeconds(2);
+}
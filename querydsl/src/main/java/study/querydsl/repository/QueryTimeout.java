@@ -0,0 +1,77 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.annotations.QueryHints;
+import org.springframework.dao.QueryTimeoutException;
+
+import javax.persistence.Query;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 요청 마감 시간을 쿼리까지 전달 (스레드 로컬)
+ * - 마감 안에서 만든 JPAQuery 에는 남은 시간을 org.hibernate.timeout 힌트로 건다
+ *   -> hibernate 가 JDBC Statement.setQueryTimeout 으로 넘김
+ *   (JDBC 는 초 단위라 올림, javax.persistence.query.timeout 은 반올림이라 1초 미만이 0(무제한)이 돼서 안씀)
+ * - 이미 마감이 지났으면 쿼리를 만들지 않고 QueryTimeoutException
+ */
+public final class QueryTimeout {
+
+    private static final ThreadLocal<Long> DEADLINE = new ThreadLocal<>();
+
+    private QueryTimeout() {
+    }
+
+    /**
+     * @param deadlineNanos System.nanoTime 기준 마감
+     */
+    public static <T> T within(long deadlineNanos, Supplier<T> action) {
+        Long previous = DEADLINE.get();
+        //바깥에 더 짧은 마감이 있으면 그걸 따름
+        DEADLINE.set(previous == null ? deadlineNanos : Math.min(previous, deadlineNanos));
+        try {
+            return action.get();
+        } finally {
+            if (previous == null) DEADLINE.remove();
+            else DEADLINE.set(previous);
+        }
+    }
+
+    /**
+     * 다른 스레드에서 실행할 작업에 지금 마감 시간을 넘겨준다 (샤드 병렬 조회)
+     */
+    public static <T> Supplier<T> propagate(Supplier<T> action) {
+        Long deadline = DEADLINE.get();
+        return deadline == null ? action : () -> within(deadline, action);
+    }
+
+    /**
+     * 지금 스레드의 마감 (System.nanoTime 기준), 없으면 null
+     */
+    public static Long deadline() {
+        return DEADLINE.get();
+    }
+
+    public static <Q extends JPAQuery<?>> Q apply(Q query) {
+        Integer seconds = remainingSeconds();
+        if (seconds != null) query.setHint(QueryHints.TIMEOUT_HIBERNATE, seconds);
+        return query;
+    }
+
+    /**
+     * 네이티브 쿼리용
+     */
+    public static <Q extends Query> Q apply(Q query) {
+        Integer seconds = remainingSeconds();
+        if (seconds != null) query.setHint(QueryHints.TIMEOUT_HIBERNATE, seconds);
+        return query;
+    }
+
+    private static Integer remainingSeconds() {
+        Long deadline = DEADLINE.get();
+        if (deadline == null) return null;
+        long remainingNanos = deadline - System.nanoTime();
+        if (remainingNanos <= 0) throw new QueryTimeoutException("검색 마감 시간 초과");
+        return (int) ((remainingNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,114 @@
+package study.querydsl.repository;
+
+import org.springframework.dao.QueryTimeoutException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 같은 키로 동시에 들어온 요청은 먼저 온 요청(leader) 하나만 실행하고 나머지는 그 결과를 같이 받는다
+ * - 결과를 저장해두는 캐시가 아님 -> 실행이 끝나면 바로 지워서 그 다음 요청은 다시 실행
+ * - 기다리는 요청은 자기 마감 시간(QueryTimeout)까지만 기다린다
+ * - leader 가 실패하면 기다리던 요청도 같은 예외
+ *   단 leader 의 마감 초과, 취소(연결 끊김 -> Session.cancelQuery)는 leader 사정이므로 기다리던 요청이 직접 다시 실행
+ * - 결과 객체를 여러 요청이 같이 쓰므로 수정할 수 없는 값만 넘겨야 한다
+ */
+public class SingleFlight<K, V> {
+
+    //취소된 쿼리의 SQLState (H2, PostgreSQL, DB2)
+    private static final String SQL_STATE_CANCELED = "57014";
+
+    private final ConcurrentMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+    private final LongAdder rerun = new LongAdder();
+
+    public V execute(K key, Supplier<V> action) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            shared.increment();
+            return await(existing, action);
+        }
+
+        executed.increment();
+        try {
+            V result = action.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    /**
+     * 실제로 실행한 횟수
+     */
+    public long executedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * 다른 요청의 결과를 같이 받은 횟수
+     */
+    public long sharedCount() {
+        return shared.sum();
+    }
+
+    /**
+     * leader 가 취소, 마감 초과로 실패해서 기다리던 요청이 다시 실행한 횟수
+     */
+    public long rerunCount() {
+        return rerun.sum();
+    }
+
+    private V await(CompletableFuture<V> flight, Supplier<V> action) {
+        try {
+            Long deadline = QueryTimeout.deadline();
+            if (deadline == null) return flight.get();
+            return flight.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("검색 마감 시간 초과 (같은 검색 결과 대기 중)");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("같은 검색 결과 대기 중 인터럽트");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (aborted(cause)) {
+                rerun.increment();
+                return action.get();    //내 마감 시간으로 (스레드 로컬) 혼자 실행
+            }
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * 결과가 아니라 leader 요청의 사정으로 끝난 실패 (마감 초과, 취소)
+     */
+    static boolean aborted(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof CancellationException
+                    || cause instanceof QueryTimeoutException
+                    || cause instanceof javax.persistence.QueryTimeoutException
+                    || cause instanceof org.hibernate.QueryTimeoutException
+                    || cause instanceof SQLTimeoutException) return true;
+            if (cause instanceof SQLException && SQL_STATE_CANCELED.equals(((SQLException) cause).getSQLState())) return true;
+            if (cause.getCause() == cause) break;
+        }
+        return false;
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+/**
+ * Team.members 를 로딩하지 않고 팀 회원 조회
+ */
+public interface TeamRepository extends JpaRepository<Team, Long> {
+
+    @Query(value = "select m from Member m where m.team.id = :teamId",
+            countQuery = "select count(m) from Member m where m.team.id = :teamId")
+    Page<Member> findMembers(@Param("teamId") Long teamId, Pageable pageable);
+
+    @Query("select count(m) from Member m where m.team.id = :teamId")
+    long countMembers(@Param("teamId") Long teamId);
+}
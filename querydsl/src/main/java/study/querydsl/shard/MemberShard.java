@@ -0,0 +1,96 @@
+package study.querydsl.shard;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import lombok.Getter;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.boot.orm.jpa.hibernate.SpringPhysicalNamingStrategy;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.QueryTimeout;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 샤드 하나 (데이터소스 + EntityManagerFactory + 트랜잭션)
+ * - id 는 샤드마다 시퀀스를 (index + 1) 부터 샤드 수 간격으로 발급 -> 전체에서 유일하고 id 만 보고 샤드를 안다
+ */
+@Getter
+public class MemberShard {
+
+    private final int index;
+    private final DataSource dataSource;
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnly;
+
+    MemberShard(int index, int shards, String url, ShardProperties properties) {
+        this.index = index;
+        this.dataSource = DataSourceBuilder.create()
+                .url(url)
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .build();
+
+        LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setPersistenceUnitName("member-shard-" + index);
+        factory.setDataSource(dataSource);
+        factory.setPackagesToScan(Member.class.getPackage().getName());
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Map.of(
+                "hibernate.hbm2ddl.auto", properties.getDdlAuto(),
+                "hibernate.physical_naming_strategy", SpringPhysicalNamingStrategy.class.getName(),
+                "hibernate.implicit_naming_strategy", SpringImplicitNamingStrategy.class.getName()));
+        factory.afterPropertiesSet();
+        this.emf = factory.getObject();
+
+        this.em = SharedEntityManagerCreator.createSharedEntityManager(emf);
+        this.queryFactory = new JPAQueryFactory(em) {
+            @Override
+            public JPAQuery<?> query() {
+                return QueryTimeout.apply(super.query());
+            }
+        };
+        JpaTransactionManager transactionManager = new JpaTransactionManager(emf);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnly = new TransactionTemplate(transactionManager);
+        this.readOnly.setReadOnly(true);
+
+        alignSequence(shards);
+    }
+
+    /**
+     * 다음 id 를 (id - 1) % shards == index 인 값 중 지금 최대 id 보다 큰 것부터
+     */
+    private void alignSequence(int shards) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        long maxId = Math.max(
+                jdbcTemplate.queryForObject("select coalesce(max(member_id), 0) from member", Long.class),
+                jdbcTemplate.queryForObject("select coalesce(max(team_id), 0) from team", Long.class));
+        long start = maxId + 1 + Math.floorMod(index - maxId, shards);
+        jdbcTemplate.execute("alter sequence hibernate_sequence restart with " + start + " increment by " + shards);
+    }
+
+    void close() {
+        emf.close();
+        if (dataSource instanceof Closeable) {
+            try {
+                ((Closeable) dataSource).close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package study.querydsl.shard;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 회원 샤딩 설정 (member.shard.*)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "member.shard")
+public class ShardProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 샤드 JDBC url (순서 = 샤드 번호, 한번 정하면 바꾸면 안됨)
+     */
+    private List<String> urls = new ArrayList<>();
+    private String username = "sa";
+    private String password = "";
+
+    /**
+     * 샤드 스키마 생성 (hibernate.hbm2ddl.auto)
+     */
+    private String ddlAuto = "create";
+}
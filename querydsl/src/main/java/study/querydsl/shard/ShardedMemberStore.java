@@ -0,0 +1,283 @@
+package study.querydsl.shard;
+
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.Session;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+import study.querydsl.change.MemberChangeListener;
+import study.querydsl.controller.SearchCost;
+import study.querydsl.controller.SearchProperties;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.InvalidSortException;
+import study.querydsl.repository.MemberSearchSort;
+import study.querydsl.repository.QueryTimeout;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.springframework.util.StringUtils.hasText;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.where;
+
+/**
+ * 회원을 여러 DB (샤드) 에 나눠서 저장 (member.shard.enabled=true)
+ * - 팀은 팀 이름 해시로 샤드를 정하고, 팀 회원은 팀과 같은 샤드에 둔다 (팀 조인이 샤드 안에서 끝남)
+ *   팀 없는 회원은 username 해시로
+ * - id 로 샤드 찾기 : (id - 1) % 샤드 수 (MemberShard 시퀀스)
+ * - 검색 : 관련 샤드에 동시에 보내고 합친다
+ *   teamName 조건이 있으면 그 팀이 있는 샤드 하나만 (나머지 샤드엔 결과가 있을 수 없음)
+ *   페이지 : 샤드마다 정렬해서 앞에서 offset + size 개씩 가져와 병합 정렬 후 자름, total 은 샤드별 count 합
+ *   스레드 풀은 (검색 동시 실행 수 합계 x 샤드 수) -> 허용된 검색이 샤드 조회 자리를 기다리지 않게
+ *   샤드 하나가 실패하면 나머지 샤드의 실행 중인 쿼리도 취소 (Session.cancelQuery)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "member.shard", name = "enabled", havingValue = "true")
+public class ShardedMemberStore {
+
+    //샤드마다 offset + size 개를 가져와야 하므로 깊은 페이지는 막는다
+    static final int MERGE_WINDOW = 10_000;
+
+    private final List<MemberShard> shards;
+    private final ThreadPoolExecutor executor;
+
+    public ShardedMemberStore(ShardProperties properties, MemberChangeListener memberChangeListener,
+                              SearchProperties searchProperties) {
+        List<String> urls = properties.getUrls();
+        if (urls.isEmpty()) throw new IllegalStateException("member.shard.urls 가 비어 있음");
+
+        List<MemberShard> shards = new ArrayList<>();
+        for (int i = 0; i < urls.size(); i++) {
+            MemberShard shard = new MemberShard(i, urls.size(), urls.get(i), properties);
+            memberChangeListener.register(shard.getEmf());     //샤드 변경도 데이터 버전, 변경 스트림에 반영
+            shards.add(shard);
+        }
+        this.shards = Collections.unmodifiableList(shards);
+
+        int permits = 0;
+        for (SearchCost cost : SearchCost.values()) permits += searchProperties.permitsOf(cost);
+        int threads = permits * shards.size();
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "member-shard-" + threadIndex.getAndIncrement());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor.allowCoreThreadTimeOut(true);     //한가할 때는 스레드를 놓는다
+        log.info("member shards = {}, fan-out threads = {}", urls.size(), threads);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+        shards.forEach(MemberShard::close);
+    }
+
+    public Team saveTeam(String name) {
+        MemberShard shard = shardOf(name);
+        return shard.getTransactionTemplate().execute(status -> {
+            Team team = new Team(name);
+            shard.getEm().persist(team);
+            return team;
+        });
+    }
+
+    /**
+     * @param teamId 없으면 팀 없는 회원
+     */
+    public Member saveMember(String username, int age, Long teamId) {
+        MemberShard shard = teamId != null ? shardOfId(teamId) : shardOf(username);
+        return shard.getTransactionTemplate().execute(status -> {
+            Team team = teamId != null ? shard.getEm().getReference(Team.class, teamId) : null;
+            Member saved = new Member(username, age, team);
+            shard.getEm().persist(saved);
+            return saved;
+        });
+    }
+
+    public Member findMember(Long id) {
+        MemberShard shard = shardOfId(id);
+        return shard.getReadOnly().execute(status -> shard.getEm().find(Member.class, id));
+    }
+
+    public List<MemberTeamDto> search(MemberSearchCondition condition) {
+        List<List<MemberTeamDto>> results = fanOut(condition, shard -> where(shard.getQueryFactory()
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .fetch());
+        return Collections.unmodifiableList(results.stream().flatMap(List::stream).collect(Collectors.toList()));
+    }
+
+    public Page<MemberTeamDto> searchPage(MemberSearchCondition condition, Pageable pageable) {
+        MemberSearchSort.Plan sort = MemberSearchSort.plan(pageable.getSort());
+        Comparator<MemberTeamDto> comparator = MemberSearchSort.comparator(pageable.getSort());
+        long window = pageable.getOffset() + pageable.getPageSize();
+        List<MemberShard> targets = shardsFor(condition);
+        if (targets.size() > 1 && window > MERGE_WINDOW) {
+            throw new InvalidSortException("여러 샤드 검색은 앞쪽 " + MERGE_WINDOW + "건까지만 조회할 수 있습니다");
+        }
+
+        //샤드 하나면 그 샤드에서 바로 자르고, 여럿이면 앞에서 window 개씩
+        boolean single = targets.size() == 1;
+        List<ShardPage> pages = fanOut(targets, shard -> {
+            List<MemberTeamDto> content = where(shard.getQueryFactory()
+                    .select(MEMBER_TEAM_DTO)
+                    .from(member)
+                    .leftJoin(member.team, team), condition)
+                    .orderBy(sort.getOrders())
+                    .offset(single ? pageable.getOffset() : 0)
+                    .limit(single ? pageable.getPageSize() : window)
+                    .fetch();
+            long total = where(shard.getQueryFactory()
+                    .select(member)
+                    .from(member)
+                    .leftJoin(member.team, team), condition)
+                    .fetchCount();
+            return new ShardPage(content, total);
+        });
+
+        long total = pages.stream().mapToLong(page -> page.total).sum();
+        if (single) return new PageImpl<>(pages.get(0).content, pageable, total);
+        List<MemberTeamDto> content = pages.stream()
+                .flatMap(page -> page.content.stream())
+                .sorted(comparator)
+                .skip(pageable.getOffset())
+                .limit(pageable.getPageSize())
+                .collect(Collectors.toList());
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    /**
+     * 검색할 샤드 (teamName 조건이 있으면 그 팀 샤드만)
+     */
+    List<MemberShard> shardsFor(MemberSearchCondition condition) {
+        if (hasText(condition.getTeamName())) return List.of(shardOf(condition.getTeamName()));
+        return shards;
+    }
+
+    List<MemberShard> getShards() {
+        return shards;
+    }
+
+    MemberShard shardOf(String key) {
+        return shards.get(Math.floorMod(key.hashCode(), shards.size()));
+    }
+
+    MemberShard shardOfId(Long id) {
+        return shards.get((int) Math.floorMod(id - 1, (long) shards.size()));
+    }
+
+    private <T> List<T> fanOut(MemberSearchCondition condition, Function<MemberShard, T> query) {
+        return fanOut(shardsFor(condition), query);
+    }
+
+    /**
+     * 샤드별 읽기 전용 트랜잭션에서 동시에 실행 (호출한 스레드의 검색 마감 시간을 넘겨준다)
+     */
+    private <T> List<T> fanOut(List<MemberShard> targets, Function<MemberShard, T> query) {
+        if (targets.size() == 1) {
+            MemberShard shard = targets.get(0);
+            return List.of(shard.getReadOnly().execute(status -> query.apply(shard)));
+        }
+        List<CompletableFuture<T>> futures = new ArrayList<>(targets.size());
+        List<RunningQuery> running = new ArrayList<>(targets.size());
+        for (MemberShard shard : targets) {
+            RunningQuery handle = new RunningQuery();
+            running.add(handle);
+            futures.add(CompletableFuture.supplyAsync(QueryTimeout.propagate(
+                    () -> shard.getReadOnly().execute(status -> {
+                        handle.bind(shard.getEm().unwrap(Session.class));
+                        try {
+                            return query.apply(shard);
+                        } finally {
+                            handle.unbind();
+                        }
+                    })), executor));
+        }
+        //먼저 실패한 샤드가 나오면 바로 : 아직 시작 안한 샤드는 건너뛰고 (cancel), 실행 중인 샤드 쿼리는 DB 에서 취소
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (CompletableFuture<T> future : futures) {
+            future.whenComplete((result, e) -> {
+                if (e == null || !failure.compareAndSet(null, e)) return;
+                futures.forEach(other -> other.cancel(false));
+                running.forEach(RunningQuery::cancel);
+            });
+        }
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        } catch (CompletionException | CancellationException e) {
+            //아래에서 처음 실패한 원인으로 던진다
+        }
+        Throwable first = failure.get();
+        if (first != null) {
+            Throwable cause = first instanceof CompletionException && first.getCause() != null ? first.getCause() : first;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause);
+        }
+        return futures.stream().map(CompletableFuture::join).collect(Collectors.toList());
+    }
+
+    /**
+     * 다른 샤드가 실패했을 때 실행 중인 쿼리를 취소하기 위한 핸들 (CompletableFuture.cancel 은 인터럽트하지 않음)
+     */
+    private static class RunningQuery {
+
+        private final AtomicReference<Session> session = new AtomicReference<>();
+        private volatile boolean cancelled;
+
+        void bind(Session current) {
+            if (cancelled) throw new CancellationException("다른 샤드가 실패해서 취소된 검색");
+            session.set(current);
+            if (cancelled) throw new CancellationException("다른 샤드가 실패해서 취소된 검색");
+        }
+
+        void unbind() {
+            session.set(null);
+        }
+
+        void cancel() {
+            cancelled = true;
+            Session current = session.getAndSet(null);
+            if (current == null) return;
+            try {
+                current.cancelQuery();
+            } catch (RuntimeException e) {
+                log.debug("shard query cancel failed", e);
+            }
+        }
+    }
+
+    private static class ShardPage {
+        final List<MemberTeamDto> content;
+        final long total;
+
+        ShardPage(List<MemberTeamDto> content, long total) {
+            this.content = content;
+            this.total = total;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package study.querydsl.startup;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import study.querydsl.repository.MemberSearchPredicates;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+
+/**
+ * 엔티티 Q 타입 (QMember.member 같은 static 인스턴스) 과 검색 조건 클래스를 시작 직후 백그라운드에서 미리 로딩
+ * - 첫 검색 요청이 Q 타입 클래스 로딩, 경로 객체 생성을 기다리지 않도록
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QTypePreloader {
+
+    private final EntityManagerFactory emf;
+
+    @EventListener(ApplicationStartedEvent.class)
+    public void preload() {
+        Thread thread = new Thread(this::load, "qtype-preloader");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void load() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        long start = System.nanoTime();
+        int loaded = 0;
+        for (EntityType<?> entity : emf.getMetamodel().getEntities()) {
+            Class<?> type = entity.getJavaType();
+            String qType = type.getPackage().getName() + ".Q" + type.getSimpleName();
+            try {
+                Class.forName(qType, true, classLoader);
+                loaded++;
+            } catch (ClassNotFoundException e) {
+                log.debug("no Q type for {}", type.getName());
+            }
+        }
+        try {
+            Class.forName(MemberSearchPredicates.class.getName(), true, classLoader);   //QMemberTeamDto, Param 들
+        } catch (ClassNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        log.info("preloaded {} Q types in {} ms", loaded, (System.nanoTime() - start) / 1_000_000);
+    }
+}
@@ -0,0 +1,22 @@
+package study.querydsl.startup;
+
+import org.springframework.boot.LazyInitializationExcludeFilter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import study.querydsl.change.MemberChangeListener;
+import study.querydsl.summary.MemberCountSummary;
+
+/**
+ * fast-startup 프로필 (spring.main.lazy-initialization=true) 에서도 바로 만들어야 하는 빈
+ * - hibernate 이벤트 리스너 : 처음 쓰일 때 만들면 그 전에 생긴 변경을 놓친다
+ *   (변경 스트림, 데이터 버전, 회원 수 요약이 어긋남)
+ * - EntityManagerFactory 도 이 빈들 때문에 시작할 때 만들어진다 (첫 요청이 메타데이터 생성을 기다리지 않음)
+ */
+@Configuration
+public class StartupConfig {
+
+    @Bean
+    public static LazyInitializationExcludeFilter eagerHibernateListeners() {
+        return LazyInitializationExcludeFilter.forBeanTypes(MemberChangeListener.class, MemberCountSummary.class);
+    }
+}
@@ -0,0 +1,31 @@
+package study.querydsl.startup;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * 요청을 받을 수 있게 된 시점 (JVM 시작부터) 을 로그로 남긴다
+ * member.startup.exit-on-ready=true 이면 바로 종료 (./gradlew cdsArchive 가 로딩된 클래스를 덤프할 때)
+ */
+@Slf4j
+@Component
+public class StartupReporter {
+
+    private final boolean exitOnReady;
+
+    public StartupReporter(@Value("${member.startup.exit-on-ready:false}") boolean exitOnReady) {
+        this.exitOnReady = exitOnReady;
+    }
+
+    @EventListener
+    public void ready(ApplicationReadyEvent event) {
+        log.info("ready to serve in {} ms since JVM start", ManagementFactory.getRuntimeMXBean().getUptime());
+        if (exitOnReady) System.exit(SpringApplication.exit(event.getApplicationContext()));
+    }
+}
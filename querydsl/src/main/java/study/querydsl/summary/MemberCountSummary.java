@@ -0,0 +1,348 @@
+package study.querydsl.summary;
+
+import com.querydsl.core.Tuple;
+import com.querydsl.core.types.EntityPath;
+import com.querydsl.core.types.Predicate;
+import com.querydsl.core.types.dsl.NumberExpression;
+import com.querydsl.jpa.impl.JPAQuery;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.event.spi.PreUpdateEvent;
+import org.hibernate.event.spi.PreUpdateEventListener;
+import org.hibernate.internal.SessionFactoryImpl;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.proxy.HibernateProxy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationStartedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.MemberCount;
+import study.querydsl.entity.QMember;
+import study.querydsl.entity.Team;
+
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.LongSupplier;
+
+import static org.springframework.util.StringUtils.hasText;
+
+/**
+ * (팀, 나이 구간) 별 회원 수 요약 테이블 (member_count_summary) 관리와 조회
+ * - 회원 저장/삭제, 팀 이동, 나이 변경 : hibernate 이벤트에서 같은 세션 커넥션으로 +1/-1 (같은 트랜잭션, 롤백되면 같이 롤백)
+ *   (팀, 구간) 행이 없으면 insert, 동시에 다른 트랜잭션이 먼저 insert 했으면 (키 중복) savepoint 로 되돌리고 다시 update
+ * - 시작할 때 요약 테이블이 비어 있으면 member 에서 한번 만든다 (ddl-auto create 가 아닌 DB, 이미 있던 회원)
+ * - 벌크 연산 (applyBulk) : 실행 전에 같은 조건으로 (팀, 구간) 별 수를 세서 빼고, update 는 실행 후 대상 회원을 다시 세서 더한다
+ * - 페이지 total : username 조건이 없으면 요약에서 합계
+ *   나이 조건이 구간 중간에 걸치면 걸친 부분만 member 에서 정확히 센다 (나이 인덱스로 최대 9살 폭)
+ */
+@Slf4j
+@Component
+public class MemberCountSummary
+        implements PostInsertEventListener, PreUpdateEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+    static final int BUCKET_WIDTH = 10;
+    static final long NO_TEAM = 0L;
+    //벌크 update 후 다시 셀 때 in 절 하나에 넣는 id 수 (Oracle 은 1000 까지)
+    static final int IN_CHUNK = 1000;
+
+    private static final String INCREMENT =
+            "update member_count_summary set members = members + ? where team_id = ? and age_bucket = ?";
+    private static final String INSERT =
+            "insert into member_count_summary (team_id, age_bucket, members) values (?, ?, ?)";
+    private static final String SELECT_ROW = "select team_id, age from member where member_id = ?";
+    private static final String DELETE_ALL = "delete from member_count_summary";
+    private static final String REBUILD =
+            "insert into member_count_summary (team_id, age_bucket, members)"
+                    + " select coalesce(team_id, 0), floor(age / 10.0), count(*) from member"
+                    + " group by coalesce(team_id, 0), floor(age / 10.0)";
+
+    private final EntityManagerFactory emf;
+    private final EntityManager em;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    public MemberCountSummary(EntityManagerFactory emf, EntityManager em, DataSource dataSource,
+                              PlatformTransactionManager transactionManager) {
+        this.emf = emf;
+        this.em = em;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @PostConstruct
+    public void register() {
+        EventListenerRegistry registry = emf.unwrap(SessionFactoryImpl.class)
+                .getServiceRegistry()
+                .getService(EventListenerRegistry.class);
+        registry.appendListeners(EventType.POST_INSERT, this);
+        registry.appendListeners(EventType.PRE_UPDATE, this);
+        registry.appendListeners(EventType.POST_UPDATE, this);
+        registry.appendListeners(EventType.POST_DELETE, this);
+    }
+
+    /**
+     * 요약이 비어 있으면 한번 만들기 (요청을 받기 전에)
+     */
+    @EventListener(ApplicationStartedEvent.class)
+    public void backfill() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Long rows = jdbcTemplate.queryForObject("select count(*) from member_count_summary", Long.class);
+            if (rows != null && rows > 0) return;
+            rebuild();
+            log.info("member_count_summary rebuilt from member");
+        });
+    }
+
+    @Override
+    public void onPostInsert(PostInsertEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        Member member = (Member) event.getEntity();
+        add(event.getSession(), teamIdOf(member.getTeam()), member.getAge(), 1);
+    }
+
+    @Override
+    public void onPostDelete(PostDeleteEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        //엔티티 필드가 아니라 DB 에 있던 값 기준
+        Object[] state = event.getDeletedState();
+        String[] properties = event.getPersister().getPropertyNames();
+        add(event.getSession(), teamIdOf(valueOf(state, properties, "team")), (Integer) valueOf(state, properties, "age"), -1);
+    }
+
+    /**
+     * 이전 값을 모르는 update (분리된 엔티티를 session.update 등) 는 update 전에 DB 에서 그 행만 읽어서 옮긴다
+     */
+    @Override
+    public boolean onPreUpdate(PreUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member) || event.getOldState() != null) return false;
+        long[] old = event.getSession().doReturningWork(connection -> {
+            try (PreparedStatement select = connection.prepareStatement(SELECT_ROW)) {
+                select.setLong(1, (Long) event.getId());
+                try (ResultSet rs = select.executeQuery()) {
+                    //team_id 가 null 이면 getLong 은 0 (NO_TEAM)
+                    return rs.next() ? new long[]{rs.getLong(1), rs.getInt(2)} : null;
+                }
+            }
+        });
+        if (old == null) return false;
+        String[] properties = event.getPersister().getPropertyNames();
+        move(event.getSession(), old[0], (int) old[1],
+                teamIdOf(valueOf(event.getState(), properties, "team")), (Integer) valueOf(event.getState(), properties, "age"));
+        return false;
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent event) {
+        if (!(event.getEntity() instanceof Member)) return;
+        Object[] oldState = event.getOldState();
+        if (oldState == null) return;   //onPreUpdate 에서 반영
+        String[] properties = event.getPersister().getPropertyNames();
+        move(event.getSession(),
+                teamIdOf(valueOf(oldState, properties, "team")), (Integer) valueOf(oldState, properties, "age"),
+                teamIdOf(valueOf(event.getState(), properties, "team")), (Integer) valueOf(event.getState(), properties, "age"));
+    }
+
+    @Override
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return false;
+    }
+
+    /**
+     * 요약을 member 테이블에서 다시 만들기 (픽스처 생성 후, 현재 트랜잭션 안에서)
+     */
+    public void rebuild() {
+        jdbcTemplate.update(DELETE_ALL);
+        jdbcTemplate.update(REBUILD);
+    }
+
+    /**
+     * Member 벌크 update/delete 를 실행하고 영향받은 (팀, 구간) 만 요약에 반영 (ChangeTrackingQueryFactory, 현재 트랜잭션 안에서)
+     * - 실행 전 : 같은 조건으로 (팀, 나이) 별 수를 세서 뺀다
+     * - update 는 실행 후 : 실행 전에 읽어둔 대상 id 로 다시 세서 더한다 (바뀐 값은 조건에 안 맞을 수 있어서)
+     */
+    public long applyBulk(EntityPath<?> path, Predicate where, boolean update, LongSupplier execute) {
+        QMember target = new QMember(path.getMetadata());
+        List<Long> ids = update ? new JPAQuery<>(em).select(target.id).from(target).where(where).fetch() : List.of();
+        Map<MemberCount.Key, Long> deltas = new HashMap<>();
+        countByBucket(target, where).forEach((key, members) -> deltas.merge(key, -members, Long::sum));
+
+        long count = execute.getAsLong();
+        for (int from = 0; from < ids.size(); from += IN_CHUNK) {
+            List<Long> chunk = ids.subList(from, Math.min(from + IN_CHUNK, ids.size()));
+            countByBucket(target, target.id.in(chunk)).forEach((key, members) -> deltas.merge(key, members, Long::sum));
+        }
+
+        EventSource session = em.unwrap(EventSource.class);
+        deltas.forEach((key, delta) -> {
+            if (delta != 0) addToBucket(session, key.getTeamId(), key.getAgeBucket(), delta);
+        });
+        return count;
+    }
+
+    private Map<MemberCount.Key, Long> countByBucket(QMember target, Predicate where) {
+        NumberExpression<Long> members = target.count();
+        List<Tuple> rows = new JPAQuery<>(em)
+                .select(target.team.id, target.age, members)
+                .from(target)
+                .where(where)
+                .groupBy(target.team.id, target.age)
+                .fetch();
+        Map<MemberCount.Key, Long> counts = new HashMap<>();
+        for (Tuple row : rows) {
+            Long teamId = row.get(target.team.id);
+            MemberCount.Key key = new MemberCount.Key(teamId == null ? NO_TEAM : teamId, bucketOf(row.get(target.age)));
+            counts.merge(key, row.get(members), Long::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * 조건에 맞는 회원 수, username 조건이 있으면 요약으로 셀 수 없어서 empty
+     */
+    public OptionalLong count(MemberSearchCondition condition) {
+        if (hasText(condition.getUsername())) return OptionalLong.empty();
+        flushPendingChanges();
+
+        String teamName = hasText(condition.getTeamName()) ? condition.getTeamName() : null;
+        Integer from = condition.getAgeGoe();
+        Integer to = condition.getAgeLoe();
+        if (from != null && to != null && from > to) return OptionalLong.of(0);
+
+        //조건 안에 통째로 들어가는 구간 [fullFrom, fullTo]
+        Integer fullFrom = from == null ? null : Math.floorDiv(from + BUCKET_WIDTH - 1, BUCKET_WIDTH);
+        Integer fullTo = to == null ? null : Math.floorDiv(to + 1, BUCKET_WIDTH) - 1;
+        if (fullFrom != null && fullTo != null && fullFrom > fullTo) {
+            return OptionalLong.of(exact(teamName, from, to));    //구간 하나도 안 채움 (최대 두 구간에 걸친 좁은 범위)
+        }
+
+        long total = summed(teamName, fullFrom, fullTo);
+        if (from != null && from < fullFrom * BUCKET_WIDTH) total += exact(teamName, from, fullFrom * BUCKET_WIDTH - 1);
+        if (to != null && to >= (fullTo + 1) * BUCKET_WIDTH) total += exact(teamName, (fullTo + 1) * BUCKET_WIDTH, to);
+        return OptionalLong.of(total);
+    }
+
+    private long summed(String teamName, Integer fromBucket, Integer toBucket) {
+        StringBuilder sql = new StringBuilder("select coalesce(sum(s.members), 0) from member_count_summary s where 1 = 1");
+        List<Object> args = new ArrayList<>();
+        if (teamName != null) {
+            sql.append(" and s.team_id in (select t.team_id from team t where t.name = ?)");
+            args.add(teamName);
+        }
+        if (fromBucket != null) {
+            sql.append(" and s.age_bucket >= ?");
+            args.add(fromBucket);
+        }
+        if (toBucket != null) {
+            sql.append(" and s.age_bucket <= ?");
+            args.add(toBucket);
+        }
+        return jdbcTemplate.queryForObject(sql.toString(), Long.class, args.toArray());
+    }
+
+    private long exact(String teamName, int from, int to) {
+        if (teamName == null) {
+            return jdbcTemplate.queryForObject("select count(*) from member m where m.age between ? and ?",
+                    Long.class, from, to);
+        }
+        return jdbcTemplate.queryForObject("select count(*) from member m join team t on t.team_id = m.team_id"
+                + " where t.name = ? and m.age between ? and ?", Long.class, teamName, from, to);
+    }
+
+    /**
+     * 쓰기 트랜잭션에서 아직 flush 안된 변경이 요약에 반영되도록 (JDBC 조회는 자동 flush 가 안됨)
+     */
+    private void flushPendingChanges() {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            em.flush();
+        }
+    }
+
+    private static void move(EventSource session, long oldTeam, int oldAge, long newTeam, int newAge) {
+        if (oldTeam == newTeam && bucketOf(oldAge) == bucketOf(newAge)) return;
+        add(session, oldTeam, oldAge, -1);
+        add(session, newTeam, newAge, 1);
+    }
+
+    private static void add(EventSource session, long teamId, int age, long delta) {
+        addToBucket(session, teamId, bucketOf(age), delta);
+    }
+
+    private static void addToBucket(EventSource session, long teamId, int bucket, long delta) {
+        session.doWork(connection -> {
+            if (increment(connection, teamId, bucket, delta)) return;
+            //실패한 insert 가 트랜잭션 전체를 망가뜨리지 않도록 (PostgreSQL 등) savepoint 안에서
+            Savepoint savepoint = connection.setSavepoint();
+            try (PreparedStatement insert = connection.prepareStatement(INSERT)) {
+                insert.setLong(1, teamId);
+                insert.setInt(2, bucket);
+                insert.setLong(3, delta);
+                insert.executeUpdate();
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                if (!isDuplicateKey(e)) throw e;
+                //다른 트랜잭션이 같은 (팀, 구간) 행을 먼저 만들었음 -> 그 행에 더한다
+                connection.rollback(savepoint);
+                if (!increment(connection, teamId, bucket, delta)) throw e;
+            }
+        });
+    }
+
+    private static boolean increment(Connection connection, long teamId, int bucket, long delta) throws SQLException {
+        try (PreparedStatement increment = connection.prepareStatement(INCREMENT)) {
+            increment.setLong(1, delta);
+            increment.setLong(2, teamId);
+            increment.setInt(3, bucket);
+            return increment.executeUpdate() > 0;
+        }
+    }
+
+    /**
+     * SQLState 23xxx : 무결성 제약 위반 (기본키 중복)
+     */
+    private static boolean isDuplicateKey(SQLException e) {
+        return e.getSQLState() != null && e.getSQLState().startsWith("23");
+    }
+
+    static int bucketOf(int age) {
+        return Math.floorDiv(age, BUCKET_WIDTH);
+    }
+
+    private static long teamIdOf(Object team) {
+        if (team == null) return NO_TEAM;
+        if (team instanceof HibernateProxy) return (Long) ((HibernateProxy) team).getHibernateLazyInitializer().getIdentifier();
+        return ((Team) team).getId();
+    }
+
+    private static Object valueOf(Object[] state, String[] properties, String property) {
+        for (int i = 0; i < properties.length; i++) {
+            if (properties[i].equals(property)) return state[i];
+        }
+        throw new IllegalStateException("Member 에 " + property + " 속성이 없음");
+    }
+}
@@ -0,0 +1,222 @@
+package study.querydsl.writebehind;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import study.querydsl.change.MemberDataVersion;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.repository.OptimisticLockRetry;
+import study.querydsl.shard.ShardedMemberStore;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+import static study.querydsl.repository.MemberSearchPredicates.where;
+
+/**
+ * 회원 나이 변경을 메모리에 모았다가 한번에 반영 (member.write-behind.enabled=true)
+ * - 같은 회원의 변경은 마지막 값 하나로 합친다
+ * - flushInterval 마다, 또는 maxPending 명이 쌓이면 batchSize 명씩 한 트랜잭션으로 반영
+ *   (dirty checking + hibernate JDBC batch -> 변경 스트림, 데이터 버전, 회원 수 요약도 그대로 갱신)
+ *   낙관적 락 충돌은 OptimisticLockRetry 로 다시 읽어서 같은 값으로
+ * - 반영 전에도 이 서버의 검색 결과에는 대기 중인 값을 덮어쓴다 (overlay)
+ * - 종료할 때 남은 변경을 모두 반영
+ * 서버가 비정상 종료되면 반영 안된 변경은 잃어버린다 (나이처럼 잃어도 되는 값에만)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "member.write-behind", name = "enabled", havingValue = "true")
+public class MemberAgeWriteBehind {
+
+    private final WriteBehindProperties properties;
+    private final EntityManager em;
+    private final JPAQueryFactory queryFactory;
+    private final OptimisticLockRetry optimisticLockRetry;
+    private final MemberDataVersion memberDataVersion;
+
+    private final Map<Long, Integer> pending = new ConcurrentHashMap<>();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+    private final Counter flushed;
+
+    public MemberAgeWriteBehind(WriteBehindProperties properties, EntityManager em, JPAQueryFactory queryFactory,
+                                OptimisticLockRetry optimisticLockRetry, MemberDataVersion memberDataVersion,
+                                ObjectProvider<ShardedMemberStore> shardedMemberStore, MeterRegistry meterRegistry) {
+        if (shardedMemberStore.getIfAvailable() != null) {
+            throw new IllegalStateException("member.write-behind 는 member.shard 와 같이 쓸 수 없음");
+        }
+        this.properties = properties;
+        this.em = em;
+        this.queryFactory = queryFactory;
+        this.optimisticLockRetry = optimisticLockRetry;
+        this.memberDataVersion = memberDataVersion;
+
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "member-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getFlushInterval().toMillis();
+        flusher.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+
+        this.flushed = Counter.builder("member.write-behind.flushed").register(meterRegistry);
+        Gauge.builder("member.write-behind.pending", pending, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 종료 전에 남은 변경 반영 (EntityManagerFactory 보다 먼저 정리됨)
+     * - 실패해도 종료는 계속, 반영 못한 변경은 (회원 id=나이) 로그로 남긴다
+     */
+    @PreDestroy
+    public void close() throws InterruptedException {
+        try {
+            flusher.shutdown();
+            flusher.awaitTermination(10, TimeUnit.SECONDS);
+            flush();
+        } catch (RuntimeException e) {
+            log.error("member write-behind : 종료 전 반영 실패", e);
+        } finally {
+            if (!pending.isEmpty()) {
+                log.error("member write-behind : {} 명의 나이 변경을 반영하지 못함 {}", pending.size(), pending);
+            }
+        }
+    }
+
+    /**
+     * 나이 변경 예약, 이 서버의 검색에는 바로 보인다
+     */
+    public void changeAge(Long memberId, int age) {
+        pending.put(memberId, age);
+        memberDataVersion.markChanged();    //보이는 값이 바뀌었으니 ETag 도 바꾼다
+        if (pending.size() >= properties.getMaxPending() && flushRequested.compareAndSet(false, true)) {
+            flusher.execute(this::flushQuietly);
+        }
+    }
+
+    public Integer pendingAge(Long memberId) {
+        return pending.get(memberId);
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * 대기 중인 변경을 batchSize 명씩 반영, 반영하는 동안 들어온 새 값은 다음 번에
+     * - 한 묶음이 실패해도 나머지 묶음은 반영하고, 실패한 묶음은 남겨둔 채로 첫 예외를 던진다
+     */
+    public synchronized void flush() {
+        flushRequested.set(false);
+        if (pending.isEmpty()) return;
+        List<Map<Long, Integer>> chunks = new ArrayList<>();
+        Map<Long, Integer> chunk = new LinkedHashMap<>();
+        for (Map.Entry<Long, Integer> entry : pending.entrySet()) {
+            chunk.put(entry.getKey(), entry.getValue());
+            if (chunk.size() == properties.getBatchSize()) {
+                chunks.add(chunk);
+                chunk = new LinkedHashMap<>();
+            }
+        }
+        if (!chunk.isEmpty()) chunks.add(chunk);
+
+        RuntimeException failure = null;
+        for (Map<Long, Integer> ages : chunks) {
+            try {
+                optimisticLockRetry.execute(status -> {
+                    List<Member> members = em.createQuery("select m from Member m where m.id in :ids", Member.class)
+                            .setParameter("ids", ages.keySet())
+                            .getResultList();
+                    members.forEach(m -> m.changeAge(ages.get(m.getId())));
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                if (failure == null) failure = e;
+                else failure.addSuppressed(e);
+                continue;
+            }
+            //그 사이 같은 회원에 새 값이 들어왔으면 남겨둔다 (삭제된 회원은 그냥 버림)
+            ages.forEach(pending::remove);
+            flushed.increment(ages.size());
+        }
+        if (failure != null) throw failure;
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            log.warn("member write-behind flush failed, retry next time", e);    //남은 변경은 다음 주기에
+        }
+    }
+
+    /**
+     * 검색 결과에 대기 중인 나이를 덮어쓰기
+     * - 나이 조건에서 벗어난 회원은 빼고, 새로 조건에 들어온 회원은 뒤에 붙인다
+     * - 결과 목록은 여러 요청이 같이 쓰는 것일 수 있어서 (SingleFlight) 바꾸지 않고 새로 만든다
+     */
+    public List<MemberTeamDto> overlay(MemberSearchCondition condition, List<MemberTeamDto> results) {
+        if (pending.isEmpty()) return results;
+        Map<Long, Integer> snapshot = new LinkedHashMap<>(pending);
+
+        List<MemberTeamDto> overlaid = new ArrayList<>(results.size());
+        Set<Long> seen = new HashSet<>();
+        for (MemberTeamDto dto : results) {
+            seen.add(dto.getMemberId());
+            Integer age = snapshot.get(dto.getMemberId());
+            if (age == null) {
+                overlaid.add(dto);
+            } else if (matches(condition, age)) {
+                overlaid.add(new MemberTeamDto(dto.getMemberId(), dto.getUsername(), age, dto.getTeamId(), dto.getTeamName()));
+            }
+        }
+
+        List<Long> entering = new ArrayList<>();
+        snapshot.forEach((id, age) -> {
+            if (!seen.contains(id) && matches(condition, age)) entering.add(id);
+        });
+        if (entering.isEmpty()) return overlaid;
+
+        MemberSearchCondition withoutAge = MemberSearchCondition.builder()
+                .username(condition.getUsername())
+                .ignoreCase(condition.isIgnoreCase())
+                .teamName(condition.getTeamName())
+                .build();
+        List<MemberTeamDto> entered = where(queryFactory
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), withoutAge)
+                .where(member.id.in(entering))
+                .fetch();
+        for (MemberTeamDto dto : entered) {
+            overlaid.add(new MemberTeamDto(dto.getMemberId(), dto.getUsername(), snapshot.get(dto.getMemberId()),
+                    dto.getTeamId(), dto.getTeamName()));
+        }
+        return overlaid;
+    }
+
+    private static boolean matches(MemberSearchCondition condition, int age) {
+        return (condition.getAgeGoe() == null || age >= condition.getAgeGoe())
+                && (condition.getAgeLoe() == null || age <= condition.getAgeLoe());
+    }
+}
@@ -0,0 +1,35 @@
+package study.querydsl.writebehind;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 회원 나이 변경 모아쓰기 설정 (member.write-behind.*)
+ */
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "member.write-behind")
+public class WriteBehindProperties {
+
+    private boolean enabled = false;
+
+    /**
+     * 대기 중인 회원 수가 이만큼 쌓이면 주기를 기다리지 않고 바로 반영
+     */
+    private int maxPending = 1_000;
+
+    /**
+     * 쌓인 변경을 반영하는 주기
+     */
+    private Duration flushInterval = Duration.ofMillis(200);
+
+    /**
+     * 한 트랜잭션에서 반영할 회원 수 (hibernate.jdbc.batch_size 의 배수로)
+     */
+    private int batchSize = 500;
+}
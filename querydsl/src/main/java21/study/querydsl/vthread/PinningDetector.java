@@ -0,0 +1,108 @@
+package study.querydsl.vthread;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordedStackTrace;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 가상 스레드가 carrier 스레드에 고정(pinning)된 구간을 JFR(jdk.VirtualThreadPinned) 로 잡아서
+ * 어느 repository 호출에서 얼마나 고정됐는지 기록
+ * - JDBC 드라이버, 커넥션 풀, hibernate 안의 synchronized 블록에서 블로킹하면 고정됨 (JDK 21~23)
+ * - 스택에서 처음 나오는 study.querydsl.repository 프레임을 호출 지점으로 본다 (없으면 study.querydsl, 그것도 없으면 other)
+ * - 지표 : member.vthread.pinned (tag call = 클래스.메서드)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(prefix = "member.virtual-threads", name = "enabled", havingValue = "true")
+public class PinningDetector {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final String REPOSITORY_PACKAGE = "study.querydsl.repository.";
+    private static final String APP_PACKAGE = "study.querydsl.";
+
+    private final MeterRegistry meterRegistry;
+    private final Duration threshold;
+    private final Map<String, Stat> stats = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public PinningDetector(MeterRegistry meterRegistry,
+                           @Value("${member.virtual-threads.pinning-threshold:20ms}") Duration threshold) {
+        this.meterRegistry = meterRegistry;
+        this.threshold = threshold;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(threshold).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+    }
+
+    @PreDestroy
+    public void stop() {
+        stream.close();
+        stats.forEach((call, stat) -> log.info("pinned call={} count={} total={}ms", call, stat.count.sum(), stat.nanos.sum() / 1_000_000));
+    }
+
+    /**
+     * 호출 지점별 (횟수, 고정된 시간 합계 ms)
+     */
+    public Map<String, long[]> snapshot() {
+        Map<String, long[]> snapshot = new ConcurrentHashMap<>();
+        stats.forEach((call, stat) -> snapshot.put(call, new long[]{stat.count.sum(), stat.nanos.sum() / 1_000_000}));
+        return snapshot;
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String call = callSite(event.getStackTrace());
+        Duration duration = event.getDuration();
+
+        Stat stat = stats.computeIfAbsent(call, key -> new Stat(Timer.builder("member.vthread.pinned")
+                .tag("call", key)
+                .register(meterRegistry)));
+        stat.count.increment();
+        stat.nanos.add(duration.toNanos());
+        stat.timer.record(duration);
+        log.warn("virtual thread pinned {}ms at {}", duration.toMillis(), call);
+    }
+
+    static String callSite(RecordedStackTrace stackTrace) {
+        if (stackTrace == null) return "other";
+        List<RecordedFrame> frames = stackTrace.getFrames();
+        String app = null;
+        for (RecordedFrame frame : frames) {
+            if (!frame.isJavaFrame()) continue;
+            String type = frame.getMethod().getType().getName();
+            String name = type + "." + frame.getMethod().getName();
+            if (type.startsWith(REPOSITORY_PACKAGE)) return name;
+            if (app == null && type.startsWith(APP_PACKAGE) && !type.contains("$$")) app = name;
+        }
+        return app == null ? "other" : app;
+    }
+
+    private static class Stat {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+        private final Timer timer;
+
+        Stat(Timer timer) {
+            this.timer = timer;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package study.querydsl.vthread;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import study.querydsl.controller.SearchExecutor;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 가상 스레드 실행 (JDK 21+, -PvirtualThreads 로 빌드했을 때만 포함되는 소스)
+ * member.virtual-threads.enabled=true 이면
+ * - Tomcat 요청 처리 -> 요청마다 가상 스레드
+ * - 검색 실행 (SearchExecutor) -> 전용 스레드 풀 대신 가상 스레드
+ *   동시 실행 수는 스레드 수가 아니라 SearchAdmission 의 등급별 제한과 커넥션 풀 크기로 제한된다
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "member.virtual-threads", name = "enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadProtocolHandler() {
+        return protocolHandler -> protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    @Bean(name = SearchExecutor.TASK_EXECUTOR_BEAN, destroyMethod = "")
+    public AsyncTaskExecutor memberSearchTaskExecutor() {
+        return new TaskExecutorAdapter(searchThreads());
+    }
+
+    @Bean(destroyMethod = "close")
+    public ExecutorService searchThreads() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("member-search-", 0).factory());
+    }
+}
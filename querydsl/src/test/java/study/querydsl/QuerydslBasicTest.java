@@ -23,6 +23,7 @@ import study.querydsl.entity.Member;
 import study.querydsl.entity.QMember;
 import study.querydsl.entity.QTeam;
 import study.querydsl.entity.Team;
+import study.querydsl.repository.FastProjections;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
@@ -619,6 +620,37 @@ public class QuerydslBasicTest {
         }
     }
 
+    /**
+     * DTO 로 가져오기 (FastProjections : Projections 자리에 그대로, 행마다 리플렉션 X)
+     */
+    @Test
+    public void findDtoByFastProjections() {
+        List<MemberDto> bean = queryFactory
+                .select(FastProjections.bean(MemberDto.class,
+                        member.username, member.age))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+
+        List<MemberDto> fields = queryFactory
+                .select(FastProjections.fields(MemberDto.class,
+                        member.username, member.age))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+
+        List<UserDto> constructor = queryFactory
+                .select(FastProjections.constructor(UserDto.class,
+                        member.username, member.age))
+                .from(member)
+                .where(member.username.eq("member1"))
+                .fetch();
+
+        assertThat(bean).contains(new MemberDto("member1", 10));
+        assertThat(fields).contains(new MemberDto("member1", 10));
+        assertThat(constructor).contains(new UserDto("member1", 10));
+    }
+
     /**
      * Dto 조회할 때 서브쿼리도 같이 사용
      */
@@ -0,0 +1,203 @@
+package study.querydsl.change;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.change.MemberChangeEvent.Type;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+class MemberChangeStreamTest {
+
+    @Autowired
+    MemberChangeStream memberChangeStream;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    List<MemberChangeEvent> received = new CopyOnWriteArrayList<>();
+    Consumer<List<MemberChangeEvent>> subscriber = received::addAll;
+
+    @BeforeEach
+    public void before() {
+        memberChangeStream.subscribe(subscriber);
+    }
+
+    @AfterEach
+    public void after() {
+        memberChangeStream.unsubscribe(subscriber);
+    }
+
+    @Test
+    public void commitPublishes() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("streamTeam");
+            em.persist(team);
+            Member streamMember = new Member("streamMember", 10, team);
+            em.persist(streamMember);
+            em.flush();
+            streamMember.changeAge(11);
+        });
+
+        MemberChangeEvent inserted = await(e -> e.getType() == Type.INSERT && "streamMember".equals(e.getData().get("username")));
+        MemberChangeEvent updated = await(e -> e.getType() == Type.UPDATE && "streamMember".equals(e.getData().get("username")));
+        assertThat(updated.getData().get("age")).isEqualTo(11);
+        assertThat(updated.getOffset()).isGreaterThan(inserted.getOffset());
+
+        //놓친 이벤트는 로그에서 다시 읽을 수 있다
+        assertThat(memberChangeStream.readFrom(inserted.getOffset()))
+                .extracting(MemberChangeEvent::getOffset)
+                .contains(inserted.getOffset(), updated.getOffset());
+    }
+
+    @Test
+    public void rollbackDiscards() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("rollbackStreamMember", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("afterRollbackMember", 10)));
+
+        //커밋된 이벤트가 도착했을 때 롤백된 이벤트는 없어야 한다
+        await(e -> "afterRollbackMember".equals(e.getData().get("username")));
+        assertThat(received).noneMatch(e -> "rollbackStreamMember".equals(e.getData().get("username")));
+    }
+
+    @Test
+    public void bulkUpdate() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("bulkStreamMember", 10));
+            em.flush();
+            queryFactory
+                    .update(member)
+                    .set(member.age, 20)
+                    .where(member.username.eq("bulkStreamMember"))
+                    .execute();
+        });
+
+        MemberChangeEvent bulk = await(e -> e.getType() == Type.BULK_UPDATE);
+        assertThat(bulk.getEntity()).isEqualTo("Member");
+        assertThat(bulk.getId()).isNull();
+        assertThat(((Number) bulk.getData().get("count")).longValue()).isEqualTo(1);
+    }
+
+    /**
+     * 다시 시작하면 마지막 offset 다음부터, readFrom 은 중간부터 읽는다
+     */
+    @Test
+    public void resumeOffsets(@TempDir Path dir) throws Exception {
+        String logFile = dir.resolve("changes.log").toString();
+        MemberChangeStream first = standalone(logFile);
+        first.start();
+        for (int i = 0; i < 100; i++) first.capture(MemberChangeEvent.of(Type.INSERT, new Member("offset" + i, i)));
+        first.stop();
+
+        MemberChangeStream second = standalone(logFile);
+        second.start();
+        second.capture(MemberChangeEvent.of(Type.INSERT, new Member("afterRestart", 0)));
+        second.stop();
+
+        List<MemberChangeEvent> tail = second.readFrom(57);
+        assertThat(tail).extracting(MemberChangeEvent::getOffset).startsWith(57L, 58L).endsWith(100L).hasSize(44);
+        assertThat(tail.get(tail.size() - 1).getData().get("username")).isEqualTo("afterRestart");
+        assertThat(second.readFrom(101)).isEmpty();
+    }
+
+    /**
+     * 종료 후에 커밋된 변경은 기다리지 않고 버리고 센다
+     */
+    @Test
+    public void dropAfterStop(@TempDir Path dir) throws Exception {
+        MemberChangeStream stream = standalone(dir.resolve("changes.log").toString());
+        stream.start();
+        stream.stop();
+
+        long start = System.nanoTime();
+        stream.capture(MemberChangeEvent.of(Type.INSERT, new Member("afterStop", 0)));
+
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(stream.droppedCount()).isEqualTo(1);
+    }
+
+    /**
+     * 버퍼가 가득 차도 커밋 하나는 publishTimeout 한번만 기다리고 나머지는 바로 버린다
+     */
+    @Test
+    public void publishTimeoutPerCommit(@TempDir Path dir) throws Exception {
+        MemberChangeStream stream = new MemberChangeStream(objectMapper, dir.resolve("changes.log").toString(), 16,
+                Duration.ofMillis(200), new SimpleMeterRegistry());
+        CountDownLatch release = new CountDownLatch(1);
+        stream.subscribe(events -> {
+            try {
+                release.await();    //전달 스레드를 멈춰서 버퍼가 차게
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        stream.start();
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            for (int i = 0; i < 100; i++) stream.capture(MemberChangeEvent.of(Type.INSERT, new Member("full" + i, i)));
+            long start = System.nanoTime();
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(), TransactionSynchronization.STATUS_COMMITTED);
+
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+            assertThat(stream.droppedCount()).isGreaterThan(0);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+            release.countDown();
+            stream.stop();
+        }
+    }
+
+    private MemberChangeStream standalone(String logFile) {
+        return new MemberChangeStream(objectMapper, logFile, 16, Duration.ofSeconds(5), new SimpleMeterRegistry());
+    }
+
+    private MemberChangeEvent await(Predicate<MemberChangeEvent> condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (System.nanoTime() < deadline) {
+            for (MemberChangeEvent event : received) {
+                if (condition.test(event)) return event;
+            }
+            Thread.sleep(10);
+        }
+        throw new AssertionError("변경 이벤트가 오지 않음");
+    }
+}
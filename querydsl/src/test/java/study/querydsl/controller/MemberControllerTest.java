@@ -0,0 +1,128 @@
+package study.querydsl.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.change.MemberDataVersion;
+import study.querydsl.dto.MemberTeamBinaryReader;
+import study.querydsl.dto.MemberTeamBinaryWriter;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class MemberControllerTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    MemberDataVersion memberDataVersion;
+
+    /**
+     * 바뀐게 없으면 304, 커밋된 변경이 있으면 다시 200
+     */
+    @Test
+    public void conditionalGet() throws Exception {
+        String eTag = search(get("/v1/members").param("username", "member1"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/v1/members").param("username", "member1").header("If-None-Match", eTag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Vary", "Accept"));
+
+        long before = memberDataVersion.current();
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("member1", 10)));
+        assertThat(memberDataVersion.current()).isGreaterThan(before);
+
+        search(get("/v1/members").param("username", "member1").header("If-None-Match", eTag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", memberDataVersion.eTag()));
+    }
+
+    /**
+     * 롤백된 변경은 ETag 를 바꾸지 않는다
+     */
+    @Test
+    public void rollbackKeepsVersion() {
+        long before = memberDataVersion.current();
+        transactionTemplate.executeWithoutResult(status -> {
+            em.persist(new Member("rollback", 10));
+            em.flush();
+            status.setRollbackOnly();
+        });
+        assertThat(memberDataVersion.current()).isEqualTo(before);
+    }
+
+    /**
+     * 재시작하면 (새 MemberDataVersion) 카운터가 같아도 예전 ETag 와 맞지 않는다
+     */
+    @Test
+    public void eTagPerProcess() {
+        assertThat(new MemberDataVersion().eTag()).isNotEqualTo(new MemberDataVersion().eTag());
+    }
+
+    /**
+     * Accept 가 바이너리면 application/x-member-team 으로 응답
+     */
+    @Test
+    public void binaryFormat() throws Exception {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("binaryTeam");
+            em.persist(team);
+            em.persist(new Member("binary1", 10, team));
+            em.persist(new Member("binary2", 20, team));
+        });
+
+        byte[] body = mockMvc.perform(get("/v1/members").param("teamName", "binaryTeam")
+                        .accept(MemberTeamBinaryWriter.MEDIA_TYPE))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MemberTeamBinaryWriter.MEDIA_TYPE))
+                .andExpect(header().string("Vary", "Accept"))
+                .andExpect(header().string("ETag", memberDataVersion.eTag("-bin")))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        List<MemberTeamDto> result = new ArrayList<>();
+        new MemberTeamBinaryReader(new ByteArrayInputStream(body)).readAll(result::add);
+
+        assertThat(result).extracting("username").containsExactlyInAnyOrder("binary1", "binary2");
+        assertThat(result).extracting("teamName").containsOnly("binaryTeam");
+    }
+
+    /**
+     * 검색은 비동기로 실행되므로 결과가 나온 뒤 다시 dispatch
+     */
+    private ResultActions search(MockHttpServletRequestBuilder builder) throws Exception {
+        MvcResult result = mockMvc.perform(builder)
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        return mockMvc.perform(asyncDispatch(result));
+    }
+}
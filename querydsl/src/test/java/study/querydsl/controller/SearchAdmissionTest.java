@@ -0,0 +1,100 @@
+package study.querydsl.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SearchAdmissionTest {
+
+    SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    public void classify() {
+        assertThat(SearchCost.of(new MemberSearchCondition("member1", null, null, null))).isEqualTo(SearchCost.CHEAP);
+        assertThat(SearchCost.of(new MemberSearchCondition(null, "teamA", null, null))).isEqualTo(SearchCost.MODERATE);
+        assertThat(SearchCost.of(new MemberSearchCondition(null, null, 10, 20))).isEqualTo(SearchCost.MODERATE);
+        assertThat(SearchCost.of(new MemberSearchCondition(null, null, 10, null))).isEqualTo(SearchCost.EXPENSIVE);
+        assertThat(SearchCost.of(new MemberSearchCondition(null, null, null, null))).isEqualTo(SearchCost.EXPENSIVE);
+    }
+
+    /**
+     * 자리 1개, 대기 1개 -> 세 번째는 바로 거절, 대기하던 요청은 자리가 나면 실행
+     */
+    @Test
+    public void queueFull() throws Exception {
+        SearchAdmission admission = admission(1, 1, Duration.ofSeconds(5));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        SearchAdmission.Permit first = admission.admit(SearchCost.EXPENSIVE, deadline);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        CountDownLatch waiting = new CountDownLatch(1);
+        Future<Boolean> second = executor.submit(() -> {
+            waiting.countDown();
+            try (SearchAdmission.Permit permit = admission.admit(SearchCost.EXPENSIVE, deadline)) {
+                return true;
+            }
+        });
+        waiting.await();
+        awaitWaiting(1);
+
+        assertThatThrownBy(() -> admission.admit(SearchCost.EXPENSIVE, deadline))
+                .isInstanceOf(SearchRejectedException.class)
+                .hasFieldOrPropertyWithValue("reason", "queue_full");
+        //다른 등급은 영향 없음
+        admission.admit(SearchCost.CHEAP, deadline).close();
+
+        first.close();
+        assertThat(second.get(5, TimeUnit.SECONDS)).isTrue();
+        executor.shutdown();
+
+        assertThat(rejected("queue_full")).isEqualTo(1);
+    }
+
+    @Test
+    public void queueTimeout() {
+        SearchAdmission admission = admission(1, 4, Duration.ofMillis(50));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+
+        try (SearchAdmission.Permit permit = admission.admit(SearchCost.EXPENSIVE, deadline)) {
+            assertThatThrownBy(() -> admission.admit(SearchCost.EXPENSIVE, deadline))
+                    .isInstanceOf(SearchRejectedException.class)
+                    .hasFieldOrPropertyWithValue("reason", "queue_timeout");
+        }
+        assertThat(rejected("queue_timeout")).isEqualTo(1);
+        assertThat(meterRegistry.get("member.search.queue").tag("cost", "expensive").timer().count()).isEqualTo(2);
+    }
+
+    private SearchAdmission admission(int permits, int queue, Duration queueTimeout) {
+        SearchProperties properties = new SearchProperties();
+        properties.setPermits(Map.of(SearchCost.CHEAP, permits, SearchCost.MODERATE, permits, SearchCost.EXPENSIVE, permits));
+        properties.setQueue(queue);
+        properties.setQueueTimeout(queueTimeout);
+        return new SearchAdmission(properties, meterRegistry);
+    }
+
+    private double rejected(String reason) {
+        return meterRegistry.get("member.search.rejected")
+                .tag("cost", "expensive").tag("reason", reason)
+                .counter().count();
+    }
+
+    private void awaitWaiting(int expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (meterRegistry.get("member.search.waiting").tag("cost", "expensive").gauge().value() < expected) {
+            if (System.nanoTime() > deadline) throw new AssertionError("대기열에 들어가지 않음");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -3,11 +3,17 @@ package study.querydsl.entity;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.repository.OptimisticLockRetry;
 
 import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceUnit;
+import javax.persistence.RollbackException;
 import javax.transaction.Transactional;
 
-import static org.junit.jupiter.api.Assertions.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
 @SpringBootTest
 @Transactional
@@ -16,4 +22,81 @@ class MemberTest {
     @Autowired
     EntityManager em;
 
-}
\ No newline at end of file
+    @PersistenceUnit
+    EntityManagerFactory emf;
+
+    @Autowired
+    OptimisticLockRetry optimisticLockRetry;
+
+    /**
+     * 같은 회원을 두 곳에서 수정하면 나중에 커밋하는 쪽이 실패 (@Version)
+     */
+    @Test
+    public void optimisticLock() {
+        Long memberId = saveMember("versioned", 10);
+
+        EntityManager em1 = emf.createEntityManager();
+        EntityManager em2 = emf.createEntityManager();
+        try {
+            em1.getTransaction().begin();
+            em2.getTransaction().begin();
+            Member member1 = em1.find(Member.class, memberId);
+            Member member2 = em2.find(Member.class, memberId);
+
+            member1.changeAge(20);
+            em1.getTransaction().commit();
+
+            member2.changeAge(30);
+            assertThatThrownBy(() -> em2.getTransaction().commit())
+                    .isInstanceOf(RollbackException.class)
+                    .hasCauseInstanceOf(OptimisticLockException.class);
+        } finally {
+            em1.close();
+            em2.close();
+        }
+    }
+
+    /**
+     * 충돌이 나면 새 트랜잭션에서 다시 읽어서 수정
+     */
+    @Test
+    public void retryOnConflict() {
+        Long memberId = saveMember("retry", 10);
+
+        int[] attempts = {0};
+        Long version = optimisticLockRetry.execute(status -> {
+            Member member = em.find(Member.class, memberId);
+            if (attempts[0]++ == 0) concurrentUpdate(memberId, 99);   //첫 시도 중간에 다른 곳에서 수정
+            member.changeAge(member.getAge() + 1);
+            em.flush();
+            return member.getVersion();
+        });
+
+        assertThat(attempts[0]).isEqualTo(2);
+        assertThat(version).isEqualTo(2L);
+    }
+
+    private Long saveMember(String username, int age) {
+        EntityManager other = emf.createEntityManager();
+        try {
+            other.getTransaction().begin();
+            Member member = new Member(username, age);
+            other.persist(member);
+            other.getTransaction().commit();
+            return member.getId();
+        } finally {
+            other.close();
+        }
+    }
+
+    private void concurrentUpdate(Long memberId, int age) {
+        EntityManager other = emf.createEntityManager();
+        try {
+            other.getTransaction().begin();
+            other.find(Member.class, memberId).changeAge(age);
+            other.getTransaction().commit();
+        } finally {
+            other.close();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package study.querydsl.export;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+class MemberExportJobTest {
+
+    @Autowired
+    MemberExportJob memberExportJob;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Test
+    public void export(@TempDir Path dir) throws Exception {
+        createTestcase();
+        long total = countMembers();
+
+        Path result = memberExportJob.export(dir, 4, 2);
+
+        List<String> lines = Files.readAllLines(result, StandardCharsets.UTF_8);
+        assertThat(lines.get(0)).isEqualTo(MemberExportJob.HEADER);
+        assertThat(lines).hasSize((int) total + 1);
+        assertThat(lines).anyMatch(line -> line.contains(",exportMember1,10,") && line.endsWith(",exportTeam"));
+        //다 끝나면 중간 파일은 지운다
+        try (Stream<Path> files = Files.list(dir)) {
+            assertThat(files).containsExactly(result);
+        }
+    }
+
+    /**
+     * 이미 끝난 구간(part 파일)은 다시 읽지 않는다
+     */
+    @Test
+    public void resume(@TempDir Path dir) throws Exception {
+        createTestcase();
+        Files.writeString(dir.resolve(ExportPlan.FILE), "minId=1\nmaxId=2\npartitions=2\n");
+        Files.writeString(MemberExportJob.partFile(dir, 0), "resumed,from,previous,run,\n");
+
+        Path result = memberExportJob.export(dir, 8, 2);
+
+        List<String> lines = Files.readAllLines(result, StandardCharsets.UTF_8);
+        assertThat(lines.get(1)).isEqualTo("resumed,from,previous,run,");
+    }
+
+    private void createTestcase() {
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team("exportTeam");
+            em.persist(team);
+            em.persist(new Member("exportMember1", 10, team));
+            em.persist(new Member("exportMember2", 20, team));
+            em.persist(new Member("exportMember3", 30));
+        });
+    }
+
+    private long countMembers() {
+        return em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+    }
+}
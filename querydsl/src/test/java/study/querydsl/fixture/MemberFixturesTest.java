@@ -0,0 +1,67 @@
+package study.querydsl.fixture;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.change.MemberDataVersion;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 스냅샷 복원은 DROP ALL OBJECTS 로 DB 를 통째로 바꾸므로 다른 테스트가 같이 쓰는 DB 말고 전용 메모리 DB 에서
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:fixtures-test;DB_CLOSE_DELAY=-1",
+        "member.change-log.path=build/change-log/fixtures-test-member-changes.log"})
+class MemberFixturesTest {
+
+    @Autowired
+    MemberFixtures memberFixtures;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    MemberDataVersion memberDataVersion;
+
+    /**
+     * 처음엔 만들어서 스냅샷 저장, 두 번째는 스냅샷에서 같은 데이터로 복원
+     */
+    @Test
+    public void generateThenRestore() throws Exception {
+        FixtureSpec spec = FixtureSpec.builder()
+                .teams(5)
+                .members(2_000)
+                .teamDistribution(FixtureSpec.TeamDistribution.SKEWED)
+                .ageDistribution(FixtureSpec.AgeDistribution.NORMAL)
+                .build();
+        Path snapshot = memberFixtures.snapshotOf(spec);
+        Files.deleteIfExists(snapshot);
+
+        memberFixtures.load(spec);
+        assertThat(snapshot).exists();
+        assertThat(count("member")).isEqualTo(2_000);
+        assertThat(count("team")).isEqualTo(5);
+        long ageSum = ageSum();
+
+        jdbcTemplate.update("delete from member where age < 40");
+        long before = memberDataVersion.current();
+
+        memberFixtures.load(spec);
+        assertThat(count("member")).isEqualTo(2_000);
+        assertThat(ageSum()).isEqualTo(ageSum);
+        assertThat(memberDataVersion.current()).isGreaterThan(before);
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("select count(*) from " + table, Long.class);
+    }
+
+    private long ageSum() {
+        return jdbcTemplate.queryForObject("select sum(age) from member", Long.class);
+    }
+}
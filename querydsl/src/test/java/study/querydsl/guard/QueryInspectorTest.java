@@ -0,0 +1,131 @@
+package study.querydsl.guard;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.guard.QueryInspection.Kind;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+
+@SpringBootTest(properties = {
+        "member.query-guard.index-min-rows=0",
+        "member.query-guard.explain.enabled=true",
+        "member.query-guard.explain.threshold=0ms"})
+@Transactional
+class QueryInspectorTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    QueryInspector queryInspector;
+
+    @Autowired
+    TableStatistics tableStatistics;
+
+    @Autowired
+    SlowQueryExplainer slowQueryExplainer;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @BeforeEach
+    public void before() {
+        Team teamA = new Team("guardTeam");
+        em.persist(teamA);
+        for (int i = 0; i < 20; i++) {
+            em.persist(new Member("guardMember" + i, i, teamA));
+        }
+        em.flush();
+        tableStatistics.refresh();
+    }
+
+    /**
+     * from(member, team) 에 연결 조건이 없으면 실행하지 않는다
+     */
+    @Test
+    public void crossJoinRejected() {
+        assertThatThrownBy(() -> queryFactory
+                .select(member)
+                .from(member, team)
+                .where(member.age.goe(10))
+                .fetch())
+                .isInstanceOf(QueryRejectedException.class)
+                .hasMessageContaining("CROSS_JOIN");
+    }
+
+    @Test
+    public void thetaJoinAllowed() {
+        QueryInspection inspection = queryInspector.inspect(queryFactory
+                .select(member)
+                .from(member, team)
+                .where(member.username.eq(team.name))
+                .getMetadata());
+        assertThat(inspection.has(Kind.CROSS_JOIN)).isFalse();
+
+        queryFactory
+                .select(member)
+                .from(member, team)
+                .where(member.username.eq(team.name))
+                .fetch();
+    }
+
+    @Test
+    public void missingIndex() {
+        QueryInspection byTeamName = queryInspector.inspect(queryFactory
+                .selectFrom(team)
+                .where(team.name.eq("guardTeam"))
+                .getMetadata());
+        QueryInspection byUsername = queryInspector.inspect(queryFactory
+                .selectFrom(member)
+                .where(member.username.eq("guardMember1"))
+                .getMetadata());
+
+        assertThat(byTeamName.has(Kind.MISSING_INDEX)).isTrue();
+        assertThat(byUsername.has(Kind.MISSING_INDEX)).isFalse();
+    }
+
+    @Test
+    public void estimate() {
+        long members = em.createQuery("select count(m) from Member m", Long.class).getSingleResult();
+
+        QueryInspection all = queryInspector.inspect(queryFactory.selectFrom(member).getMetadata());
+        QueryInspection filtered = queryInspector.inspect(queryFactory
+                .selectFrom(member)
+                .where(member.age.goe(10), member.username.startsWith("guard"))
+                .getMetadata());
+        QueryInspection limited = queryInspector.inspect(queryFactory.selectFrom(member).limit(5).getMetadata());
+
+        assertThat(all.getEstimatedRows()).isEqualTo(members);
+        assertThat(filtered.getEstimatedRows()).isLessThan(all.getEstimatedRows());
+        assertThat(limited.getEstimatedRows()).isEqualTo(5);
+    }
+
+    /**
+     * threshold 이상 걸린 select 는 실행 계획과 repository 호출 지점을 남긴다
+     */
+    @Test
+    public void explain() {
+        memberRepository.search(new MemberSearchCondition("guardMember3", null, null, null));
+
+        assertThat(slowQueryExplainer.recent())
+                .anyMatch(query -> query.getSql().contains("guardMember3")
+                        && query.getCallSite().startsWith("MemberRepositoryImpl")
+                        && !query.getPlan().isEmpty());
+    }
+}
@@ -0,0 +1,111 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.AdaptivePaging.Strategy;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class AdaptivePagingTest {
+
+    @Autowired
+    AdaptivePaging adaptivePaging;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManager em;
+
+    @BeforeEach
+    public void before() {
+        Team adaptiveTeam = new Team("adaptiveTeam");
+        em.persist(adaptiveTeam);
+        for (int i = 0; i < 25; i++) {
+            em.persist(new Member("adaptiveMember" + i, 20 + i, adaptiveTeam));
+        }
+        em.flush();
+        em.clear();
+    }
+
+    /**
+     * 어떤 방식이든 결과는 searchPageComplex 와 같다
+     */
+    @Test
+    public void sameResultForEveryStrategy() {
+        MemberSearchCondition condition = MemberSearchCondition.builder().teamName("adaptiveTeam").ageGoe(25).build();
+        for (Pageable pageable : new Pageable[]{
+                PageRequest.of(0, 10, Sort.by("age")),
+                PageRequest.of(1, 10, Sort.by("age")),
+                PageRequest.of(5, 10, Sort.by("age"))}) {     //마지막 페이지 너머
+            Page<MemberTeamDto> expected = memberRepository.searchPageComplex(condition, pageable);
+            for (Strategy strategy : Strategy.values()) {
+                Page<MemberTeamDto> page = adaptivePaging.page(condition, pageable, MemberSearchSort.plan(pageable.getSort()), strategy);
+                assertThat(page.getContent()).as(strategy + " " + pageable).isEqualTo(expected.getContent());
+                assertThat(page.getTotalElements()).as(strategy + " " + pageable).isEqualTo(20);
+            }
+        }
+    }
+
+    /**
+     * username 조건은 요약으로 셀 수 없으므로 SKIP_COUNT 는 고르지 않는다
+     */
+    @Test
+    public void chooseAfterSampling() {
+        MemberSearchCondition condition = MemberSearchCondition.builder().username("adaptiveMember3").build();
+        Pageable pageable = PageRequest.of(0, 10, Sort.by("age"));
+
+        for (int i = 0; i < AdaptivePaging.MIN_SAMPLES * 2 + 1; i++) {
+            //같은 total 을 재사용하지 않도록 매번 다른 나이 조건
+            MemberSearchCondition each = MemberSearchCondition.builder().username(condition.getUsername()).ageLoe(100 + i).build();
+            assertThat(memberRepository.searchPageAdaptive(each, pageable).getTotalElements()).isEqualTo(1);
+        }
+
+        int shape = MemberSearchPredicates.HAS_USERNAME | MemberSearchPredicates.HAS_AGE_LOE;
+        assertThat(adaptivePaging.decisions().get(shape)).isIn(Strategy.COMBINED, Strategy.SPLIT);
+        assertThat(meterRegistry.find("member.paging.strategy").tag("shape", Integer.toBinaryString(shape)).counters())
+                .isNotEmpty();
+    }
+
+    @Test
+    public void cachedCount() {
+        MemberSearchCondition condition = MemberSearchCondition.builder().teamName("adaptiveTeam").build();
+        Pageable second = PageRequest.of(1, 10, Sort.by("age"));
+        Sort sort = second.getSort();
+
+        adaptivePaging.page(condition, second, MemberSearchSort.plan(sort), Strategy.SPLIT);
+        double before = cachedCountDecisions();
+        Page<MemberTeamDto> page = memberRepository.searchPageAdaptive(condition, second);
+
+        assertThat(page.getTotalElements()).isEqualTo(25);
+        assertThat(cachedCountDecisions()).isEqualTo(before + 1);
+    }
+
+    private double cachedCountDecisions() {
+        int shape = MemberSearchPredicates.HAS_TEAM_NAME;
+        return meterRegistry.get("member.paging.strategy")
+                .tag("shape", Integer.toBinaryString(shape))
+                .tag("strategy", "cached_count")
+                .counter()
+                .count();
+    }
+}
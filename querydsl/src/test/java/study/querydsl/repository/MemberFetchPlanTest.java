@@ -0,0 +1,103 @@
+package study.querydsl.repository;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * 조회 후 team, 팀원까지 쓸 때 계획별 SQL 실행 수
+ */
+@SpringBootTest
+@Transactional
+class MemberFetchPlanTest {
+
+    private static final MemberSearchCondition FETCH_PLAN_TEAM = new MemberSearchCondition(null, "fetchPlanTeam", null, null);
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    Statistics statistics;
+
+    @BeforeEach
+    public void before() {
+        Team team = new Team("fetchPlanTeam");
+        em.persist(team);
+        for (int i = 0; i < 3; i++) {
+            em.persist(new Member("fetchPlanMember" + i, 10 + i, team));
+        }
+        Team otherTeam = new Team("fetchPlanOtherTeam");
+        em.persist(otherTeam);
+        em.persist(new Member("fetchPlanOther", 10, otherTeam));
+        em.flush();
+        em.clear();
+
+        statistics = em.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+    }
+
+    @AfterEach
+    public void after() {
+        statistics.setStatisticsEnabled(false);
+    }
+
+    @Test
+    public void defaultPlan() {
+        assertThat(useTeamAndTeammates(MemberFetchPlan.DEFAULT)).isEqualTo(3);   //member + team + team.members
+    }
+
+    @Test
+    public void withTeam() {
+        assertThat(useTeamAndTeammates(MemberFetchPlan.WITH_TEAM)).isEqualTo(2);  //member join team + team.members
+    }
+
+    @Test
+    public void withTeamAndTeammates() {
+        assertThat(useTeamAndTeammates(MemberFetchPlan.WITH_TEAM_AND_TEAMMATES)).isEqualTo(1);
+    }
+
+    /**
+     * 팀 이름 조건 없이 팀원까지 페치 조인하면 전체 회원 x 팀원 수 만큼 행이 나오므로 거절
+     */
+    @Test
+    public void teammatesNeedTeamName() {
+        MemberSearchCondition noTeam = new MemberSearchCondition("fetchPlanMember0", null, null, null);
+
+        assertThatThrownBy(() -> memberRepository.findMembers(noTeam, MemberFetchPlan.WITH_TEAM_AND_TEAMMATES))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);    //IllegalArgumentException (리포지토리 예외 변환)
+        assertThat(memberRepository.findMembers(noTeam, MemberFetchPlan.WITH_TEAM)).hasSize(1);
+    }
+
+    /**
+     * 조회하고 team 이름, 팀원 이름까지 읽었을 때 실행된 SQL 수
+     */
+    private long useTeamAndTeammates(MemberFetchPlan plan) {
+        List<Member> members = memberRepository.findMembers(FETCH_PLAN_TEAM, plan);
+
+        assertThat(members).extracting(Member::getUsername)
+                .containsExactly("fetchPlanMember0", "fetchPlanMember1", "fetchPlanMember2");
+        for (Member member : members) {
+            assertThat(member.getTeam().getName()).isEqualTo("fetchPlanTeam");
+            assertThat(member.getTeam().getMembers()).extracting(Member::getUsername).hasSize(3);
+        }
+        return statistics.getPrepareStatementCount();
+    }
+}
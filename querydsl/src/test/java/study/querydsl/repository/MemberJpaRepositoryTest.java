@@ -6,6 +6,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberDto;
 import study.querydsl.dto.MemberSearchCondition;
 import study.querydsl.dto.MemberTeamDto;
 import study.querydsl.entity.Member;
@@ -29,6 +31,12 @@ class MemberJpaRepositoryTest {
     @Autowired
     MemberRepository memberRepository;
 
+    @Autowired
+    MemberJpaRepository memberJpaRepository;
+
+    @Autowired
+    MemberTopPerTeamQuery memberTopPerTeamQuery;
+
     @Test
     public void basicTest() {
         Member member = new Member("member1", 10);
@@ -90,5 +98,102 @@ class MemberJpaRepositoryTest {
         assertThat(result.getContent()).extracting("username")
                 .containsExactly("member1", "member2", "member3");
     }
-}
 
+    /**
+     * 인덱스 정렬 (age desc), 같은 나이는 id 순
+     */
+    @Test
+    public void searchPageSorted() {
+        Team team = new Team("sortTeam");
+        em.persist(team);
+        em.persist(new Member("sort1", 20, team));
+        em.persist(new Member("sort2", 30, team));
+        em.persist(new Member("sort3", 20, team));
+
+        MemberSearchCondition condition = MemberSearchCondition.builder().teamName("sortTeam").build();
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Order.desc("age")));
+
+        Page<MemberTeamDto> result = memberRepository.searchPageComplex(condition, pageRequest);
+
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("sort2", "sort3", "sort1");    //20살 둘은 id 내림차순
+    }
+
+    /**
+     * 팀명 + 나이 정렬은 인덱스로 못함 -> top-N (id 로 자르고 다시 조회)
+     */
+    @Test
+    public void searchPageTopN() {
+        Team teamA = new Team("topNTeamA");
+        Team teamB = new Team("topNTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("topN1", 91, teamB));
+        em.persist(new Member("topN2", 92, teamA));
+        em.persist(new Member("topN3", 93, teamA));
+        em.persist(new Member("topN4", 94, teamB));
+
+        MemberSearchCondition condition = MemberSearchCondition.builder().ageGoe(91).ageLoe(94).build();
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by(Sort.Order.asc("teamName"), Sort.Order.desc("age")));
+
+        Page<MemberTeamDto> result = memberRepository.searchPageSimple(condition, pageRequest);
+
+        assertThat(result.getContent()).extracting("username")
+                .containsExactly("topN3", "topN2", "topN4");
+        assertThat(result.getTotalElements()).isEqualTo(4);
+
+        PageRequest tooDeep = PageRequest.of(MemberRepositoryImpl.TOP_N_WINDOW, 3, pageRequest.getSort());
+        assertThrows(InvalidSortException.class, () -> memberRepository.searchPageSimple(condition, tooDeep));
+    }
+
+    @Test
+    public void invalidSort() {
+        PageRequest pageRequest = PageRequest.of(0, 3, Sort.by("version"));
+        assertThrows(InvalidSortException.class,
+                () -> memberRepository.searchPageComplex(new MemberSearchCondition(null, null, null, null), pageRequest));
+    }
+
+    /**
+     * 팀마다 나이 많은 순 2명 (윈도우 함수, 상관 서브쿼리 결과가 같아야 함)
+     */
+    @Test
+    public void searchTopPerTeam() {
+        Team teamA = new Team("rankTeamA");
+        Team teamB = new Team("rankTeamB");
+        em.persist(teamA);
+        em.persist(teamB);
+        em.persist(new Member("rankA1", 71, teamA));
+        em.persist(new Member("rankA2", 73, teamA));
+        em.persist(new Member("rankA3", 72, teamA));
+        em.persist(new Member("rankB1", 74, teamB));
+        em.persist(new Member("rankB2", 74, teamB));
+        em.persist(new Member("rankB3", 70, teamB));
+        em.persist(new Member("rankNoTeam", 75));
+        em.flush();
+
+        MemberSearchCondition condition = MemberSearchCondition.builder().ageGoe(70).ageLoe(75).build();
+        Sort sort = Sort.by(Sort.Order.desc("age"));
+
+        List<MemberTeamDto> window = memberTopPerTeamQuery.find(condition, sort, 2, MemberTopPerTeamQuery.Strategy.WINDOW);
+        List<MemberTeamDto> correlated = memberTopPerTeamQuery.find(condition, sort, 2, MemberTopPerTeamQuery.Strategy.CORRELATED);
+
+        //같은 나이(74)는 id 내림차순
+        assertThat(window).extracting("username").containsExactly("rankA2", "rankA3", "rankB2", "rankB1");
+        assertThat(correlated).isEqualTo(window);
+        assertThat(memberRepository.searchTopPerTeam(condition, sort, 2)).isEqualTo(window);
+    }
+
+    /**
+     * DTO 필드(username, age)만 select
+     */
+    @Test
+    public void findByProjection() {
+        Team team = new Team("projectionTeam");
+        em.persist(team);
+        em.persist(new Member("projection1", 30, team));
+
+        List<MemberDto> result = memberJpaRepository.findByUsername_Projection("projection1", MemberDto.class);
+
+        assertThat(result).containsExactly(new MemberDto("projection1", 30));
+    }
+}
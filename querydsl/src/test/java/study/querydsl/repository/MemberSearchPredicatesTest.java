@@ -0,0 +1,47 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQuery;
+import org.junit.jupiter.api.Test;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.MEMBER_TEAM_DTO;
+
+class MemberSearchPredicatesTest {
+
+    @Test
+    public void shape() {
+        assertThat(MemberSearchPredicates.shapeOf(new MemberSearchCondition(null, "", null, null))).isZero();
+        assertThat(MemberSearchPredicates.shapeOf(new MemberSearchCondition("member1", null, null, 40)))
+                .isEqualTo(MemberSearchPredicates.HAS_USERNAME | MemberSearchPredicates.HAS_AGE_LOE);
+    }
+
+    /**
+     * 값이 달라도 조합이 같으면 같은 where 절, 값은 파라미터로
+     */
+    @Test
+    public void sameShapeSameJpql() {
+        JPAQuery<MemberTeamDto> query1 = query(new MemberSearchCondition("member1", null, 10, null));
+        JPAQuery<MemberTeamDto> query2 = query(new MemberSearchCondition("member2", null, 20, null));
+
+        assertThat(query1.toString()).isEqualTo(query2.toString());
+        assertThat(query1.toString()).doesNotContain("member1").doesNotContain("team.name =");
+        assertThat(query1.getMetadata().getWhere()).isSameAs(query2.getMetadata().getWhere());
+        assertThat(query1.getMetadata().getParams()).containsValues("member1", 10);
+    }
+
+    @Test
+    public void noCondition() {
+        assertThat(query(new MemberSearchCondition(null, null, null, null)).getMetadata().getWhere()).isNull();
+    }
+
+    private JPAQuery<MemberTeamDto> query(MemberSearchCondition condition) {
+        return MemberSearchPredicates.where(new JPAQuery<>()
+                .select(MEMBER_TEAM_DTO)
+                .from(member)
+                .leftJoin(member.team, team), condition);
+    }
+}
@@ -0,0 +1,94 @@
+package study.querydsl.repository;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.InvalidDataAccessApiUsageException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static study.querydsl.entity.QMember.member;
+
+@SpringBootTest
+@Transactional
+class NormalizedUsernameTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    NormalizedUsernameBackfill normalizedUsernameBackfill;
+
+    Member normMember;
+
+    @BeforeEach
+    public void before() {
+        normMember = new Member(" Ｎｏｒｍ_User ", 10);    //전각, 앞뒤 공백, 대문자
+        em.persist(normMember);
+        em.flush();
+        em.clear();
+    }
+
+    @Test
+    public void normalizeOnPersist() {
+        assertThat(em.find(Member.class, normMember.getId()).getNormalizedUsername()).isEqualTo("norm_user");
+        assertThat(Member.normalizeUsername(null)).isNull();
+    }
+
+    /**
+     * 컬럼이 생기기 전부터 있던 회원 (normalized_username 이 null) 은 시작할 때 채운다
+     */
+    @Test
+    public void backfill() {
+        jdbcTemplate.update("update member set normalized_username = null where member_id = ?", normMember.getId());
+
+        normalizedUsernameBackfill.backfill();
+
+        assertThat(em.find(Member.class, normMember.getId()).getNormalizedUsername()).isEqualTo("norm_user");
+    }
+
+    @Test
+    public void searchIgnoreCase() {
+        MemberSearchCondition ignoreCase = MemberSearchCondition.builder().username("NORM_user").ignoreCase(true).build();
+        MemberSearchCondition exact = MemberSearchCondition.builder().username("NORM_user").build();
+
+        assertThat(memberRepository.search(ignoreCase)).extracting(MemberTeamDto::getMemberId).containsExactly(normMember.getId());
+        assertThat(memberRepository.search(exact)).isEmpty();
+        assertThat(MemberSearchPredicates.shapeOf(ignoreCase))
+                .isEqualTo(MemberSearchPredicates.HAS_USERNAME | MemberSearchPredicates.IGNORE_CASE);
+    }
+
+    /**
+     * 벌크 update 는 @PreUpdate 를 거치지 않지만 normalizedUsername 도 같이 바뀐다
+     */
+    @Test
+    public void keepNormalizedOnUpdate() {
+        queryFactory.update(member)
+                .set(member.username, "Bulk_Renamed")
+                .where(member.id.eq(normMember.getId()))
+                .execute();
+        em.clear();
+
+        assertThat(em.find(Member.class, normMember.getId()).getNormalizedUsername()).isEqualTo("bulk_renamed");
+        assertThatThrownBy(() -> queryFactory.update(member).set(member.username, member.username.upper()))
+                .isInstanceOf(InvalidDataAccessApiUsageException.class);
+    }
+}
@@ -0,0 +1,91 @@
+package study.querydsl.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 쓰기 트랜잭션 안에서는 미리 조회하지 않으므로 트랜잭션 없이 검색
+ */
+@SpringBootTest(properties = "member.prefetch.enabled=true")
+class PagePrefetchTest {
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    MemberSearchCondition condition;
+
+    @BeforeEach
+    public void before() {
+        String teamName = "prefetchTeam" + System.nanoTime();
+        transactionTemplate.executeWithoutResult(status -> {
+            Team team = new Team(teamName);
+            em.persist(team);
+            for (int i = 0; i < 25; i++) {
+                em.persist(new Member(teamName + "_" + i, i, team));
+            }
+        });
+        condition = MemberSearchCondition.builder().teamName(teamName).build();
+    }
+
+    @Test
+    public void nextPageFromPrefetch() {
+        double hits = requests("hit");
+
+        Page<MemberTeamDto> first = memberRepository.searchPageComplex(condition, PageRequest.of(0, 10, Sort.by("age")));
+        Page<MemberTeamDto> second = memberRepository.searchPageComplex(condition, PageRequest.of(1, 10, Sort.by("age")));
+        Page<MemberTeamDto> third = memberRepository.searchPageComplex(condition, PageRequest.of(2, 10, Sort.by("age")));
+
+        assertThat(first.getContent()).extracting(MemberTeamDto::getAge).startsWith(0, 1, 2);
+        assertThat(second.getContent()).extracting(MemberTeamDto::getAge).startsWith(10, 11, 12);
+        assertThat(second.getTotalElements()).isEqualTo(25);
+        assertThat(third.getContent()).extracting(MemberTeamDto::getAge).containsExactly(20, 21, 22, 23, 24);
+        assertThat(requests("hit")).isEqualTo(hits + 2);
+    }
+
+    /**
+     * 데이터가 바뀌면 (데이터 버전) 미리 조회한 페이지는 쓰지 않는다
+     */
+    @Test
+    public void missAfterChange() {
+        memberRepository.searchPageSimple(condition, PageRequest.of(0, 10, Sort.by("age")));
+        transactionTemplate.executeWithoutResult(status -> em.persist(new Member("prefetchChanged", -1,
+                em.createQuery("select t from Team t where t.name = :name", Team.class)
+                        .setParameter("name", condition.getTeamName())
+                        .getSingleResult())));
+        double misses = requests("miss");
+
+        Page<MemberTeamDto> second = memberRepository.searchPageSimple(condition, PageRequest.of(1, 10, Sort.by("age")));
+
+        assertThat(second.getTotalElements()).isEqualTo(26);
+        assertThat(second.getContent()).extracting(MemberTeamDto::getAge).startsWith(9, 10, 11);
+        assertThat(requests("miss")).isEqualTo(misses + 1);
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("member.prefetch.requests").tag("result", result).functionCounter().count();
+    }
+}
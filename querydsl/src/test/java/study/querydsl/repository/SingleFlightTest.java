@@ -0,0 +1,151 @@
+package study.querydsl.repository;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class SingleFlightTest {
+
+    SingleFlight<String, Object> singleFlight = new SingleFlight<>();
+
+    /**
+     * 실행 중에 같은 키로 들어온 요청 9개는 쿼리 없이 결과만 같이 받는다
+     */
+    @Test
+    public void coalesce() throws Exception {
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        List<Future<Object>> futures = new ArrayList<>();
+        futures.add(executor.submit(() -> singleFlight.execute("member1", () -> {
+            queries.incrementAndGet();
+            started.countDown();
+            await(release);
+            return result;
+        })));
+        started.await();
+        for (int i = 0; i < 9; i++) {
+            futures.add(executor.submit(() -> singleFlight.execute("member1", () -> {
+                queries.incrementAndGet();
+                return new Object();
+            })));
+        }
+        awaitShared(9);
+        release.countDown();
+
+        for (Future<Object> future : futures) {
+            assertThat(future.get(5, TimeUnit.SECONDS)).isSameAs(result);
+        }
+        assertThat(queries.get()).isEqualTo(1);
+        assertThat(singleFlight.executedCount()).isEqualTo(1);
+        executor.shutdown();
+
+        //끝난 뒤에 온 요청은 다시 실행
+        singleFlight.execute("member1", () -> queries.incrementAndGet());
+        assertThat(queries.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void failureIsShared() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("fail", () -> {
+            started.countDown();
+            await(release);
+            throw new IllegalStateException("db down");
+        }));
+        started.await();
+        Future<Object> follower = executor.submit(() -> singleFlight.execute("fail", Object::new));
+        awaitShared(1);
+        release.countDown();
+
+        assertThatThrownBy(() -> follower.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(IllegalStateException.class);
+        executor.shutdown();
+    }
+
+    /**
+     * leader 가 취소되면 (클라이언트 연결 끊김) 기다리던 요청은 자기가 다시 실행해서 성공
+     */
+    @Test
+    public void leaderCancelled() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        Object result = new Object();
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        Future<Object> leader = executor.submit(() -> singleFlight.execute("cancel", () -> {
+            started.countDown();
+            await(release);
+            throw new CancellationException("client disconnected");
+        }));
+        started.await();
+        Future<Object> follower = executor.submit(() -> QueryTimeout.within(System.nanoTime() + TimeUnit.SECONDS.toNanos(5),
+                () -> singleFlight.execute("cancel", () -> result)));
+        awaitShared(1);
+        release.countDown();
+
+        assertThat(follower.get(5, TimeUnit.SECONDS)).isSameAs(result);
+        assertThatThrownBy(() -> leader.get(5, TimeUnit.SECONDS)).hasCauseInstanceOf(CancellationException.class);
+        assertThat(singleFlight.rerunCount()).isEqualTo(1);
+        executor.shutdown();
+    }
+
+    /**
+     * 기다리는 요청은 leader 가 끝나지 않아도 자기 마감 시간에 포기
+     */
+    @Test
+    public void followerDeadline() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(1);
+        executor.submit(() -> singleFlight.execute("slow", () -> {
+            started.countDown();
+            await(release);
+            return new Object();
+        }));
+        started.await();
+
+        long start = System.nanoTime();
+        assertThatThrownBy(() -> QueryTimeout.within(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100),
+                () -> singleFlight.execute("slow", Object::new)))
+                .isInstanceOf(QueryTimeoutException.class);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(2));
+        release.countDown();
+        executor.shutdown();
+    }
+
+    private void awaitShared(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (singleFlight.sharedCount() < expected) {
+            if (System.nanoTime() > deadline) throw new AssertionError("같이 기다리는 요청이 없음");
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package study.querydsl.repository;
+
+import org.hibernate.Hibernate;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@Transactional
+class TeamRepositoryTest {
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TeamRepository teamRepository;
+
+    @Test
+    public void findMembers() {
+        Long teamId = createTeam("pagedTeam", 25);
+
+        Page<Member> page = teamRepository.findMembers(teamId, PageRequest.of(1, 10, Sort.by("age")));
+
+        assertThat(page.getTotalElements()).isEqualTo(25);
+        assertThat(page.getContent()).extracting(Member::getAge).containsExactly(10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+        assertThat(teamRepository.countMembers(teamId)).isEqualTo(25);
+    }
+
+    /**
+     * size, contains 는 컬렉션을 초기화하지 않는다
+     */
+    @Test
+    public void extraLazy() {
+        Long teamId = createTeam("extraLazyTeam", 5);
+        Member first = em.createQuery("select m from Member m where m.username = :username", Member.class)
+                .setParameter("username", "extraLazyTeam_0")
+                .getSingleResult();
+
+        Team team = em.find(Team.class, teamId);
+        assertThat(team.getMembers().size()).isEqualTo(5);
+        assertThat(team.getMembers().contains(first)).isTrue();
+        assertThat(Hibernate.isInitialized(team.getMembers())).isFalse();
+    }
+
+    @Test
+    public void changeTeamWithoutLoadingMembers() {
+        Long teamId = createTeam("bigTeam", 5);
+        Team team = em.find(Team.class, teamId);
+
+        Member member = new Member("newcomer", 10);
+        em.persist(member);
+        member.changeTeam(team);
+        em.flush();
+
+        assertThat(Hibernate.isInitialized(team.getMembers())).isFalse();
+        assertThat(teamRepository.countMembers(teamId)).isEqualTo(6);
+    }
+
+    private Long createTeam(String name, int members) {
+        Team team = new Team(name);
+        em.persist(team);
+        for (int i = 0; i < members; i++) {
+            em.persist(new Member(name + "_" + i, 10 + i, team));
+        }
+        em.flush();
+        em.clear();
+        return team.getId();
+    }
+}
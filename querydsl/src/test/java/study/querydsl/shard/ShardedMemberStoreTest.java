@@ -0,0 +1,124 @@
+package study.querydsl.shard;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+import study.querydsl.repository.MemberSearchSort;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * H2 메모리 DB 3개를 샤드로
+ */
+@SpringBootTest(properties = {
+        "member.shard.enabled=true",
+        "member.shard.urls[0]=jdbc:h2:mem:shard0;DB_CLOSE_DELAY=-1",
+        "member.shard.urls[1]=jdbc:h2:mem:shard1;DB_CLOSE_DELAY=-1",
+        "member.shard.urls[2]=jdbc:h2:mem:shard2;DB_CLOSE_DELAY=-1"})
+class ShardedMemberStoreTest {
+
+    private static final MemberSearchCondition ALL = new MemberSearchCondition(null, null, null, null);
+
+    @Autowired
+    ShardedMemberStore store;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    List<Team> teams = new ArrayList<>();
+
+    @BeforeEach
+    public void before() {
+        for (int t = 0; t < 6; t++) {
+            Team team = store.saveTeam("shardTeam" + t);
+            teams.add(team);
+            for (int m = 0; m < 5; m++) {
+                store.saveMember("shardMember" + t + "_" + m, (t * 7 + m * 3) % 40, team.getId());
+            }
+        }
+        store.saveMember("loner", 50, null);
+    }
+
+    @AfterEach
+    public void after() {
+        for (MemberShard shard : store.getShards()) {
+            shard.getTransactionTemplate().executeWithoutResult(status -> {
+                shard.getEm().createQuery("delete from Member").executeUpdate();
+                shard.getEm().createQuery("delete from Team").executeUpdate();
+            });
+        }
+    }
+
+    /**
+     * 팀과 팀 회원은 같은 샤드, id 만 보고 샤드를 찾을 수 있다
+     */
+    @Test
+    public void routing() {
+        for (Team team : teams) {
+            MemberShard shard = store.shardOf(team.getName());
+            assertThat(store.shardOfId(team.getId())).isSameAs(shard);
+
+            List<Member> members = shard.getReadOnly().execute(status -> shard.getEm()
+                    .createQuery("select m from Member m where m.team.id = :teamId", Member.class)
+                    .setParameter("teamId", team.getId())
+                    .getResultList());
+            assertThat(members).hasSize(5);
+            members.forEach(member -> assertThat(store.findMember(member.getId()).getUsername()).isEqualTo(member.getUsername()));
+        }
+    }
+
+    @Test
+    public void search() {
+        List<MemberTeamDto> result = memberRepository.search(ALL);
+
+        assertThat(result).hasSize(31);
+        assertThat(result).extracting(MemberTeamDto::getMemberId).doesNotHaveDuplicates();
+    }
+
+    /**
+     * teamName 조건은 그 팀이 있는 샤드 하나만 조회
+     */
+    @Test
+    public void pruning() {
+        MemberSearchCondition condition = new MemberSearchCondition(null, "shardTeam3", null, null);
+
+        assertThat(store.shardsFor(condition)).containsExactly(store.shardOf("shardTeam3"));
+        assertThat(memberRepository.search(condition))
+                .extracting(MemberTeamDto::getTeamName)
+                .containsOnly("shardTeam3")
+                .hasSize(5);
+    }
+
+    /**
+     * 샤드별로 정렬한 앞부분을 합쳐서 자른 결과 = 전체를 정렬해서 자른 결과
+     */
+    @Test
+    public void mergePages() {
+        Sort sort = Sort.by(Sort.Order.desc("age"), Sort.Order.asc("username"));
+        List<MemberTeamDto> expected = memberRepository.search(ALL).stream()
+                .sorted(MemberSearchSort.comparator(sort))
+                .collect(Collectors.toList());
+
+        for (int page = 0; page < 4; page++) {
+            Page<MemberTeamDto> result = memberRepository.searchPageComplex(ALL, PageRequest.of(page, 8, sort));
+
+            assertThat(result.getTotalElements()).isEqualTo(31);
+            assertThat(result.getContent()).containsExactlyElementsOf(
+                    expected.subList(page * 8, Math.min(expected.size(), page * 8 + 8)));
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package study.querydsl.summary;
+
+import com.querydsl.jpa.impl.JPAQueryFactory;
+import org.hibernate.Session;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static study.querydsl.entity.QMember.member;
+import static study.querydsl.entity.QTeam.team;
+import static study.querydsl.repository.MemberSearchPredicates.where;
+
+@SpringBootTest
+@Transactional
+class MemberCountSummaryTest {
+
+    @Autowired
+    MemberCountSummary memberCountSummary;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    JPAQueryFactory queryFactory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    Team summaryTeamA;
+    Team summaryTeamB;
+    Member first;
+
+    @BeforeEach
+    public void before() {
+        memberCountSummary.rebuild();
+        summaryTeamA = new Team("summaryTeamA");
+        summaryTeamB = new Team("summaryTeamB");
+        em.persist(summaryTeamA);
+        em.persist(summaryTeamB);
+        for (int i = 0; i < 30; i++) {
+            Member created = new Member("summaryMember" + i, 5 + i * 2, i % 2 == 0 ? summaryTeamA : summaryTeamB);
+            em.persist(created);
+            if (i == 0) first = created;
+        }
+        em.persist(new Member("summaryNoTeam", 33));
+    }
+
+    @Test
+    public void count() {
+        assertMatches(MemberSearchCondition.builder().build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").build());
+        //구간 중간에 걸친 나이 조건
+        assertMatches(MemberSearchCondition.builder().ageGoe(13).ageLoe(47).build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamB").ageGoe(20).ageLoe(39).build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").ageGoe(31).build());
+        assertMatches(MemberSearchCondition.builder().ageLoe(24).build());
+        //한 구간도 다 채우지 못하는 좁은 범위
+        assertMatches(MemberSearchCondition.builder().ageGoe(17).ageLoe(22).build());
+        assertMatches(MemberSearchCondition.builder().ageGoe(40).ageLoe(30).build());
+    }
+
+    @Test
+    public void changeTeamAndAge() {
+        first.changeTeam(summaryTeamB);
+        first.changeAge(58);
+
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamB").ageGoe(50).build());
+    }
+
+    @Test
+    public void remove() {
+        em.remove(first);
+
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").build());
+        assertMatches(MemberSearchCondition.builder().ageLoe(9).build());
+    }
+
+    @Test
+    public void bulkUpdate() {
+        em.flush();
+        queryFactory
+                .update(member)
+                .set(member.age, member.age.add(10))
+                .where(member.username.startsWith("summaryMember"))
+                .execute();
+
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").ageGoe(20).ageLoe(49).build());
+        assertMatches(MemberSearchCondition.builder().ageGoe(60).build());
+    }
+
+    @Test
+    public void bulkDelete() {
+        em.flush();
+        queryFactory
+                .delete(member)
+                .where(member.username.in("summaryMember0", "summaryMember3", "summaryNoTeam"))
+                .execute();
+
+        assertMatches(MemberSearchCondition.builder().build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").ageLoe(9).build());
+        assertMatches(MemberSearchCondition.builder().ageGoe(30).ageLoe(39).build());
+    }
+
+    /**
+     * age, team 을 안 바꾸는 벌크 update 는 요약을 건드리지 않는다 (다시 만들면 없는 구간 행이 지워짐)
+     */
+    @Test
+    public void bulkUpdateOtherColumn() {
+        em.flush();
+        jdbcTemplate.update("insert into member_count_summary (team_id, age_bucket, members) values (0, 99, 7)");
+
+        queryFactory
+                .update(member)
+                .set(member.username, "summaryRenamed")
+                .where(member.id.eq(first.getId()))
+                .execute();
+
+        assertThat(jdbcTemplate.queryForObject(
+                "select members from member_count_summary where team_id = 0 and age_bucket = 99", Long.class)).isEqualTo(7);
+    }
+
+    /**
+     * 이전 값을 모르는 update (분리된 엔티티를 session.update) 는 update 전에 그 행만 읽어서 옮긴다
+     */
+    @Test
+    public void updateDetached() {
+        em.flush();
+        em.detach(first);
+        first.changeAge(58);
+        em.unwrap(Session.class).update(first);
+
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").ageLoe(9).build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamA").ageGoe(50).build());
+    }
+
+    /**
+     * 요약이 비어 있는 DB (ddl-auto create 가 아닌 DB) 는 시작할 때 member 에서 만든다
+     */
+    @Test
+    public void backfillWhenEmpty() {
+        em.flush();
+        jdbcTemplate.update("delete from member_count_summary");
+
+        memberCountSummary.backfill();
+
+        assertMatches(MemberSearchCondition.builder().build());
+        assertMatches(MemberSearchCondition.builder().teamName("summaryTeamB").ageGoe(20).build());
+    }
+
+    /**
+     * username 조건은 요약으로 셀 수 없다 -> count 쿼리로
+     */
+    @Test
+    public void username() {
+        assertThat(memberCountSummary.count(MemberSearchCondition.builder().username("summaryMember1").build())).isEmpty();
+    }
+
+    private void assertMatches(MemberSearchCondition condition) {
+        long exact = where(queryFactory
+                .select(member)
+                .from(member)
+                .leftJoin(member.team, team), condition)
+                .fetchCount();
+        assertThat(memberCountSummary.count(condition)).hasValue(exact);
+    }
+}
@@ -0,0 +1,117 @@
+package study.querydsl.writebehind;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.support.TransactionTemplate;
+import study.querydsl.dto.MemberSearchCondition;
+import study.querydsl.dto.MemberTeamDto;
+import study.querydsl.entity.Member;
+import study.querydsl.entity.Team;
+import study.querydsl.repository.MemberRepository;
+
+import javax.persistence.EntityManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 주기 반영은 끄고 (1h) flush() 를 직접 호출
+ */
+@SpringBootTest(properties = {
+        "member.write-behind.enabled=true",
+        "member.write-behind.flush-interval=1h",
+        "member.write-behind.max-pending=5"})
+class MemberAgeWriteBehindTest {
+
+    @Autowired
+    MemberAgeWriteBehind writeBehind;
+
+    @Autowired
+    MemberRepository memberRepository;
+
+    @Autowired
+    EntityManager em;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    public void after() {
+        writeBehind.flush();
+    }
+
+    @Test
+    public void coalesceThenFlush() {
+        Long memberId = createMembers("writeBehindTeam", 1).get(0);
+
+        writeBehind.changeAge(memberId, 11);
+        writeBehind.changeAge(memberId, 12);
+        writeBehind.changeAge(memberId, 13);
+
+        assertThat(writeBehind.pendingCount()).isEqualTo(1);
+        assertThat(ageInDb(memberId)).isEqualTo(10);
+        //반영 전에도 검색에는 마지막 값
+        assertThat(memberRepository.search(MemberSearchCondition.builder().teamName("writeBehindTeam").build()))
+                .extracting(MemberTeamDto::getAge)
+                .containsExactly(13);
+
+        writeBehind.flush();
+
+        assertThat(writeBehind.pendingCount()).isEqualTo(0);
+        assertThat(ageInDb(memberId)).isEqualTo(13);
+    }
+
+    /**
+     * 대기 중인 나이로 나이 조건을 다시 판단
+     */
+    @Test
+    public void overlayAgeCondition() {
+        Long memberId = createMembers("overlayTeam", 1).get(0);
+
+        writeBehind.changeAge(memberId, 50);
+
+        assertThat(memberRepository.search(MemberSearchCondition.builder().teamName("overlayTeam").ageGoe(40).build()))
+                .extracting(MemberTeamDto::getMemberId)
+                .containsExactly(memberId);
+        assertThat(memberRepository.search(MemberSearchCondition.builder().teamName("overlayTeam").ageLoe(20).build()))
+                .isEmpty();
+    }
+
+    /**
+     * maxPending 명이 쌓이면 주기를 기다리지 않고 반영
+     */
+    @Test
+    public void flushOnMaxPending() throws Exception {
+        List<Long> memberIds = createMembers("maxPendingTeam", 5);
+
+        memberIds.forEach(id -> writeBehind.changeAge(id, 30));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (writeBehind.pendingCount() > 0 && System.nanoTime() < deadline) Thread.sleep(10);
+        assertThat(writeBehind.pendingCount()).isEqualTo(0);
+        assertThat(memberIds).allMatch(id -> ageInDb(id) == 30);
+    }
+
+    private List<Long> createMembers(String teamName, int count) {
+        return transactionTemplate.execute(status -> {
+            Team team = new Team(teamName);
+            em.persist(team);
+            List<Long> ids = new ArrayList<>();
+            for (int i = 0; i < count; i++) {
+                Member created = new Member(teamName + "_" + i, 10, team);
+                em.persist(created);
+                em.flush();
+                ids.add(created.getId());
+            }
+            return ids;
+        });
+    }
+
+    private int ageInDb(Long memberId) {
+        return transactionTemplate.execute(status -> em.find(Member.class, memberId).getAge());
+    }
+}